@@ -1,6 +1,7 @@
 package study.querydsl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import study.querydsl.entity.Member;
@@ -17,10 +18,18 @@ import javax.transaction.Transactional;
 public class InitMember {
 
     private final InitMemberService initMemberService;
+    private final ObjectProvider<MemberSnapshotInitializer> snapshot;
 
     @PostConstruct
     public void init() {
+        final MemberSnapshotInitializer snapshotInitializer = snapshot.getIfAvailable();
+        if (snapshotInitializer != null && snapshotInitializer.isRestored()) {
+            return;
+        }
         initMemberService.init();
+        if (snapshotInitializer != null) {
+            snapshotInitializer.dumpIfMissing();
+        }
     }
 
     @Component
@@ -0,0 +1,94 @@
+package study.querydsl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 빠른 기동 모드 (member.snapshot.restore=true)
+ * ddl-auto: create + InitMember 로 매번 새로 만드는 대신 H2 SCRIPT 덤프를 RUNSCRIPT 로 복원한다.
+ * 스냅샷이 없으면 평소처럼 기동하고, InitMember 가 데이터를 넣은 뒤 스냅샷을 만든다.
+ * DataSourceScriptDatabaseInitializer 타입이라 EntityManagerFactory 보다 먼저 실행된다.
+ * 파일은 H2 서버가 읽고 쓰므로 같은 머신의 로컬 H2 (tcp://localhost) 기준이다.
+ * 엔티티 매핑이 바뀌면 스냅샷 파일을 지워야 한다. (기본 위치가 build 아래라 gradle clean 으로도 지워진다)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "member.snapshot", name = "restore", havingValue = "true")
+public class MemberSnapshotInitializer extends DataSourceScriptDatabaseInitializer {
+
+    private final DataSource dataSource;
+    private final Path path;
+
+    private boolean restored;
+
+    public MemberSnapshotInitializer(DataSource dataSource,
+                                     @Value("${member.snapshot.path:build/snapshot/querydsl.sql.gz}") String path) {
+        super(dataSource, new DatabaseInitializationSettings());
+        this.dataSource = dataSource;
+        this.path = Path.of(path).toAbsolutePath();
+    }
+
+    @Override
+    public boolean initializeDatabase() {
+        if (!Files.exists(path)) {
+            log.info("스냅샷 {} 이 없어서 ddl-auto 와 InitMember 로 기동합니다", path);
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        execute("drop all objects", "runscript from " + quote(path) + " compression gzip");
+        restored = true;
+        log.info("스냅샷 {} 복원: {}ms", path, (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /**
+     * true 면 스키마와 데이터가 이미 있으므로 ddl-auto 와 InitMember 를 건너뛴다.
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * InitMember 가 데이터를 넣은 뒤 호출, 스냅샷이 없을 때만 만든다.
+     */
+    public void dumpIfMissing() {
+        if (restored || Files.exists(path)) {
+            return;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+        } catch (IOException e) {
+            throw new IllegalStateException("스냅샷 디렉터리를 만들 수 없습니다: " + path.getParent(), e);
+        }
+        execute("script to " + quote(path) + " compression gzip");
+        log.info("스냅샷 저장: {}", path);
+    }
+
+    private void execute(String... sqls) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : sqls) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("스냅샷 실행 실패: " + path, e);
+        }
+    }
+
+    private static String quote(Path path) {
+        return "'" + path.toString().replace("'", "''") + "'";
+    }
+}
@@ -0,0 +1,148 @@
+package study.querydsl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 배포 직후 첫 요청이 느린 문제 (Hibernate 쿼리 플랜 캐시, querydsl 직렬화, JIT 가 모두 비어 있음)
+ * /v1 ~ /v3 가 쓰는 검색을 MemberSearchCondition 조건 조합 x 페이지 크기별로 미리 실행한다.
+ * 조건 조합은 24 개: 회원명/팀명/나이 하한/나이 상한 16 개 + 회원명이 있는 8 개에 ignoreCase (회원명 없는 ignoreCase 는 같은 쿼리라 뺀다)
+ * member.warmup.enabled=true 일 때만 실행된다. (기본값 false)
+ * ApplicationRunner 가 끝나야 readiness 가 ACCEPTING_TRAFFIC 이 되므로 워밍업이 끝난 뒤에 트래픽을 받는다.
+ * member.warmup.budget 안에서 member.warmup.rounds 번까지 반복하고, 커버리지와 시간은 로그와 /actuator/info 로 남긴다.
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "member.warmup", name = "enabled", havingValue = "true")
+public class MemberWarmupRunner implements ApplicationRunner, InfoContributor {
+
+    private static final int PREDICATES = 5;
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final int[] pageSizes;
+    private final int rounds;
+    private final Duration budget;
+
+    private final Map<String, Object> report = new LinkedHashMap<>();
+
+    public MemberWarmupRunner(MemberJpaRepository memberJpaRepository,
+                              MemberRepository memberRepository,
+                              @Value("${member.warmup.page-sizes:10,20,100}") int[] pageSizes,
+                              @Value("${member.warmup.rounds:20}") int rounds,
+                              @Value("${member.warmup.budget:10s}") Duration budget) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.memberRepository = memberRepository;
+        this.pageSizes = pageSizes;
+        this.rounds = rounds;
+        this.budget = budget;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        final List<Runnable> shapes = shapes();
+        final BitSet covered = new BitSet(shapes.size());
+        final long start = System.nanoTime();
+        final long deadline = start + budget.toNanos();
+
+        int round = 0;
+        int failures = 0;
+        warmup:
+        for (; round < rounds; round++) {
+            for (int i = 0; i < shapes.size(); i++) {
+                if (System.nanoTime() > deadline) {
+                    break warmup;
+                }
+                try {
+                    shapes.get(i).run();
+                    covered.set(i);
+                } catch (RuntimeException e) {
+                    failures++;
+                    log.warn("워밍업 쿼리 {} 실패", i, e);
+                }
+            }
+        }
+
+        final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        synchronized (report) {
+            report.put("shapes", shapes.size());
+            report.put("covered", covered.cardinality());
+            report.put("rounds", round);
+            report.put("failures", failures);
+            report.put("elapsedMs", elapsedMs);
+        }
+        log.info("워밍업: 쿼리 {}/{} 개, {} 회, 실패 {} 건, {}ms",
+                covered.cardinality(), shapes.size(), round, failures, elapsedMs);
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        synchronized (report) {
+            builder.withDetail("warmup", new LinkedHashMap<>(report));
+        }
+    }
+
+    /**
+     * 조건 조합마다 v1 (목록) 하나, 페이지 크기마다 v2/v3 (simple, complex, count over) 첫 페이지와 둘째 페이지
+     */
+    private List<Runnable> shapes() {
+        final List<Runnable> shapes = new ArrayList<>();
+        for (int mask = 0; mask < 1 << PREDICATES; mask++) {
+            if ((mask & 16) != 0 && (mask & 1) == 0) {
+                continue; // ignoreCase 는 회원명 조건이 있을 때만 의미가 있다.
+            }
+            final MemberSearchCondition condition = condition(mask);
+            shapes.add(() -> memberJpaRepository.search(condition));
+            for (int size : pageSizes) {
+                for (int page = 0; page < 2; page++) {
+                    final Pageable pageable = PageRequest.of(page, size);
+                    shapes.add(() -> memberRepository.searchPageSimple(condition, pageable));
+                    shapes.add(() -> memberRepository.searchPageComplex(condition, pageable));
+                    shapes.add(() -> memberRepository.searchPageWindowCount(condition, pageable));
+                }
+            }
+        }
+        return shapes;
+    }
+
+    private static MemberSearchCondition condition(int mask) {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        if ((mask & 1) != 0) {
+            condition.setUsername("member1");
+        }
+        if ((mask & 2) != 0) {
+            condition.setTeamName("teamA");
+        }
+        if ((mask & 4) != 0) {
+            condition.setAgeGoe(10);
+        }
+        if ((mask & 8) != 0) {
+            condition.setAgeLoe(40);
+        }
+        if ((mask & 16) != 0) {
+            condition.setIgnoreCase(true);
+        }
+        return condition;
+    }
+}
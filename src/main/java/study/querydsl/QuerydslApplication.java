@@ -1,17 +1,44 @@
 package study.querydsl;
 
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.spring.SpringConnectionProvider;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import study.querydsl.event.MemberBulkStatementTracker;
+import study.querydsl.event.MemberChangeEventRingBuffer;
+import study.querydsl.event.MemberChangeInspector;
+import study.querydsl.monitor.QueryOriginInspector;
+import study.querydsl.repository.MemberDataVersion;
+import study.querydsl.repository.MemberDataVersionInspector;
+import study.querydsl.repository.MemberTeamReadModelTracker;
+import study.querydsl.repository.MemberUsernameFilter;
 
 import javax.persistence.EntityManager;
+import javax.sql.DataSource;
 
-@SpringBootApplication
+// R2DBC ConnectionFactory 빈이 생기면 DataSource 자동 설정이 빠지므로 제외 (MemberReactiveRepository 참고)
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
 public class QuerydslApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(QuerydslApplication.class, args);
+		final ConfigurableApplicationContext context = SpringApplication.run(QuerydslApplication.class, args);
+		// AppCDS 아카이브 생성, 기동 시간 측정용 (build.gradle 의 appCdsArchive, startupTime)
+		if (context.getEnvironment().getProperty("member.exit-after-start", Boolean.class, false)) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 	@Bean
@@ -19,4 +46,44 @@ public class QuerydslApplication {
 		return new JPAQueryFactory(em);
 	}
 
+	/**
+	 * querydsl-sql, JPA 트랜잭션에 묶인 같은 커넥션을 사용한다.
+	 */
+	@Bean
+	public SQLQueryFactory sqlQueryFactory(DataSource dataSource) {
+		final Configuration configuration = new Configuration(H2Templates.builder().build());
+		configuration.setExceptionTranslator(new SpringExceptionTranslator());
+		return new SQLQueryFactory(configuration, new SpringConnectionProvider(dataSource));
+	}
+
+	/**
+	 * Hibernate 는 StatementInspector 를 하나만 받기 때문에 순서대로 연결해서 등록
+	 * 맨 앞의 MemberBulkStatementTracker 가 앞 문장의 엔티티 flush/벌크 여부를 먼저 확정한다.
+	 */
+	@Bean
+	public HibernatePropertiesCustomizer statementInspectorCustomizer(MemberDataVersion memberDataVersion,
+																	 MemberChangeEventRingBuffer changeEventRingBuffer,
+																	 MemberBulkStatementTracker bulkStatements,
+																	 MemberUsernameFilter usernameFilter,
+																	 MemberTeamReadModelTracker readModelTracker) {
+		final MemberDataVersionInspector dataVersionInspector = new MemberDataVersionInspector(memberDataVersion);
+		final MemberChangeInspector changeInspector = new MemberChangeInspector(changeEventRingBuffer, bulkStatements);
+		final QueryOriginInspector queryOriginInspector = new QueryOriginInspector();
+		final StatementInspector inspector = sql -> queryOriginInspector.inspect(readModelTracker.inspect(
+				usernameFilter.inspect(changeInspector.inspect(dataVersionInspector.inspect(bulkStatements.inspect(sql))))));
+		return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+	}
+
+	/**
+	 * 스냅샷을 복원했으면 스키마를 다시 만들지 않는다.
+	 */
+	@Bean
+	public HibernatePropertiesCustomizer snapshotDdlCustomizer(ObjectProvider<MemberSnapshotInitializer> snapshot) {
+		return properties -> snapshot.ifAvailable(initializer -> {
+			if (initializer.isRestored()) {
+				properties.put(AvailableSettings.HBM2DDL_AUTO, "none");
+			}
+		});
+	}
+
 }
@@ -0,0 +1,15 @@
+package study.querydsl.batch;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * writer 스레드가 모두 다른 배치를 처리 중 (member.batch.writer-threads), 클라이언트는 잠시 뒤 다시 보낸다.
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "배치 등록이 모두 처리 중입니다. 잠시 후 다시 시도하세요.")
+public class MemberBatchBusyException extends RuntimeException {
+
+    public MemberBatchBusyException() {
+        super("배치 writer 스레드가 모두 사용 중입니다.");
+    }
+}
@@ -0,0 +1,220 @@
+package study.querydsl.batch;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberBatchResult;
+import study.querydsl.dto.MemberBatchRow;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NDJSON 회원 배치 등록
+ * 요청 스레드가 한 줄씩 파싱해서 flushSize 단위 chunk 를 큐에 넣고, writer 스레드가 chunk 마다 트랜잭션을 열어 저장한다.
+ * 큐가 가득 차면 파싱이 멈추기 때문에(= 소켓을 더 읽지 않는다) writer 가 밀리면 클라이언트까지 backpressure 가 걸린다.
+ * writer 스레드가 모두 사용 중이면 기다리지 않고 MemberBatchBusyException(503)으로 거절한다.
+ * (writer 가 아직 시작하지 않은 배치는 큐를 비울 스레드가 없어서 요청 스레드가 무한정 기다리게 된다)
+ * 읽을 수 없는 줄을 만나면 멈추고 MemberBatchParseException(400)에 줄 번호를 담는다.
+ */
+@Component
+public class MemberBatchImporter {
+
+    static final List<MemberBatchRow> END = new ArrayList<>(0);
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final ObjectReader reader;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService writerExecutor;
+    // 처리 중인 배치 수 제한, 요청이 끝날 때(writer 종료 후) 반납
+    private final Semaphore writers;
+    private final int jdbcBatchSize;
+    private final int flushSize;
+    private final int queueCapacity;
+
+    public MemberBatchImporter(ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${member.batch.jdbc-batch-size:100}") int jdbcBatchSize,
+                               @Value("${member.batch.flush-size:1000}") int flushSize,
+                               @Value("${member.batch.queue-capacity:4}") int queueCapacity,
+                               @Value("${member.batch.writer-threads:2}") int writerThreads) {
+        this.reader = objectMapper.readerFor(MemberBatchRow.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writerExecutor = Executors.newFixedThreadPool(writerThreads);
+        this.writers = new Semaphore(writerThreads);
+        this.jdbcBatchSize = jdbcBatchSize;
+        this.flushSize = flushSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public MemberBatchResult importMembers(InputStream in) throws IOException {
+        if (!writers.tryAcquire()) {
+            throw new MemberBatchBusyException();
+        }
+        try {
+            return importWithWriter(in);
+        } finally {
+            writers.release();
+        }
+    }
+
+    private MemberBatchResult importWithWriter(InputStream in) throws IOException {
+        final long start = System.nanoTime();
+        final BlockingQueue<List<MemberBatchRow>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final Future<Long> writer = writerExecutor.submit(() -> write(queue, new HashMap<>()));
+
+        long read = 0;
+        try (MappingIterator<MemberBatchRow> rows = reader.readValues(in)) {
+            List<MemberBatchRow> chunk = new ArrayList<>(flushSize);
+            while (rows.hasNextValue()) {
+                chunk.add(rows.nextValue());
+                read++;
+                if (chunk.size() == flushSize) {
+                    enqueue(queue, chunk, writer);
+                    chunk = new ArrayList<>(flushSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                enqueue(queue, chunk, writer);
+            }
+            enqueue(queue, END, writer);
+        } catch (JsonProcessingException e) {
+            writer.cancel(true);
+            throw new MemberBatchParseException(line(e, read), e.getOriginalMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            writer.cancel(true);
+            throw e;
+        }
+
+        final long inserted = await(writer);
+        return new MemberBatchResult(inserted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * 파서 위치의 줄 번호, 없으면 읽은 회원 수 + 1 (빈 줄이 없다고 본다)
+     */
+    private static long line(JsonProcessingException e, long read) {
+        final JsonLocation location = e.getLocation();
+        return location != null && location.getLineNr() > 0 ? location.getLineNr() : read + 1;
+    }
+
+    private void enqueue(BlockingQueue<List<MemberBatchRow>> queue, List<MemberBatchRow> chunk, Future<Long> writer) {
+        try {
+            while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    await(writer);
+                    throw new IllegalStateException("배치 writer 가 먼저 종료되었습니다.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.cancel(true);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long await(Future<Long> writer) {
+        try {
+            return writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.cancel(true);
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @param teamIds 팀명 -> 팀 id 캐시, 배치 한 건 동안 유지. 커밋된 chunk 에서 찾거나 만든 팀만 들어간다.
+     */
+    long write(BlockingQueue<List<MemberBatchRow>> queue, Map<String, Long> teamIds) throws InterruptedException {
+        long count = 0;
+
+        while (true) {
+            final List<MemberBatchRow> chunk = queue.take();
+            if (chunk == END) {
+                return count;
+            }
+            // chunk 에서 새로 알게 된 팀은 커밋된 뒤에만 캐시에 넣는다. (롤백된 팀 id 를 다음 chunk 가 참조하지 않도록)
+            final Map<String, Long> chunkTeamIds = new HashMap<>();
+            transactionTemplate.executeWithoutResult(status -> writeChunk(chunk, teamIds, chunkTeamIds));
+            teamIds.putAll(chunkTeamIds);
+            count += chunk.size();
+        }
+    }
+
+    private void writeChunk(List<MemberBatchRow> chunk, Map<String, Long> teamIds, Map<String, Long> chunkTeamIds) {
+        em.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+
+        for (MemberBatchRow row : chunk) {
+            final Member member = new Member(row.getUsername(), row.getAge());
+            final Long teamId = resolveTeamId(row.getTeamName(), teamIds, chunkTeamIds);
+            if (teamId != null) {
+                // changeTeam 을 쓰면 team.members 컬렉션이 초기화되므로 연관관계 주인 쪽만 세팅
+                member.setTeam(em.getReference(Team.class, teamId));
+            }
+            em.persist(member);
+        }
+
+        // chunk 단위로 영속성 컨텍스트를 비워서 메모리가 쌓이지 않게 한다.
+        em.flush();
+        em.clear();
+    }
+
+    private Long resolveTeamId(String teamName, Map<String, Long> teamIds, Map<String, Long> chunkTeamIds) {
+        if (teamName == null) {
+            return null;
+        }
+        final Long cached = teamIds.get(teamName);
+        if (cached != null) {
+            return cached;
+        }
+
+        return chunkTeamIds.computeIfAbsent(teamName, name -> em
+                .createQuery("select t.id from Team t where t.name = :name", Long.class)
+                .setParameter("name", name)
+                .setMaxResults(1)
+                .getResultStream()
+                .findFirst()
+                .orElseGet(() -> {
+                    final Team team = new Team(name);
+                    em.persist(team);
+                    return team.getId();
+                }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.batch;
+
+import lombok.Getter;
+
+/**
+ * NDJSON 한 줄을 회원으로 읽을 수 없다. (400, 그 앞 chunk 는 이미 커밋되었을 수 있다)
+ */
+@Getter
+public class MemberBatchParseException extends RuntimeException {
+
+    private final long line;
+
+    public MemberBatchParseException(long line, String detail, Throwable cause) {
+        super(line + "번째 줄을 읽을 수 없습니다: " + detail, cause);
+        this.line = line;
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.batch;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * CSV 적재 실행
+ * java -jar querydsl.jar --member.import.file=/data/members.csv --spring.main.web-application-type=none
+ * (ddl-auto: create 프로필이면 기동할 때 테이블이 다시 만들어지므로 ddl-auto 를 none 으로 두고 실행)
+ */
+@Component
+@ConditionalOnProperty(name = "member.import.file")
+public class MemberCsvImportRunner implements ApplicationRunner {
+
+    private final MemberCsvImporter importer;
+    private final String file;
+    private final boolean skipHeader;
+
+    public MemberCsvImportRunner(MemberCsvImporter importer,
+                                 @Value("${member.import.file}") String file,
+                                 @Value("${member.import.skip-header:true}") boolean skipHeader) {
+        this.importer = importer;
+        this.file = file;
+        this.skipHeader = skipHeader;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        importer.importFile(Paths.get(file), skipHeader);
+    }
+}
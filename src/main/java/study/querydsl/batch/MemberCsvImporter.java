@@ -0,0 +1,372 @@
+package study.querydsl.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChangeEvent;
+import study.querydsl.event.MemberChangeEventRingBuffer;
+import study.querydsl.repository.MemberDataVersion;
+import study.querydsl.repository.MemberTeamReadModelTracker;
+import study.querydsl.repository.MemberUsernameFilter;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 회원 CSV 대량 적재 (username,age,teamName 한 줄에 한 명, 따옴표는 MemberCsvParser 참고)
+ * - 파일을 window 단위로 memory-map 해서 바이트를 직접 파싱한다. 나이는 바이트에서 바로 int 로, 팀명은 사전(바이트 비교)으로 id 를 찾기 때문에
+ *   row 당 만드는 String 은 insert 에 필요한 username 하나뿐이다.
+ * - JDBC batch insert, commitSize 마다 커밋하면서 같은 트랜잭션에 체크포인트(파일 offset)를 기록한다.
+ *   중간에 죽어도 다시 실행하면 마지막 커밋 지점부터 이어서 적재한다.
+ * - 엔티티 이벤트가 없으므로 커밋할 때마다 직접 알린다: 변경 이벤트(Member 범위, 새 Team), Bloom filter, member_team stale 표시
+ * - member_id, team_id 는 Hibernate 가 쓰는 시퀀스에서 받는다. (매핑에서 시퀀스 이름을 읽는다, Member.id 참고)
+ */
+@Slf4j
+@Component
+public class MemberCsvImporter {
+
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private static final String CREATE_CHECKPOINT_TABLE =
+            "create table if not exists member_import_checkpoint (file_name varchar(1024) primary key, file_offset bigint not null, row_count bigint not null)";
+    private static final String SELECT_CHECKPOINT = "select file_offset, row_count from member_import_checkpoint where file_name = ?";
+    private static final String MERGE_CHECKPOINT = "merge into member_import_checkpoint key (file_name) values (?, ?, ?)";
+    private static final String INSERT_MEMBER = "insert into member (member_id, age, team_id, username, username_lower) values (%s, ?, ?, ?, ?)";
+    private static final String SELECT_TEAM = "select team_id from team where name = ?";
+    private static final String INSERT_TEAM = "insert into team (team_id, name) values (?, ?)";
+
+    private final DataSource dataSource;
+    private final MemberDataVersion memberDataVersion;
+    private final MemberUsernameFilter usernameFilter;
+    private final MemberChangeEventRingBuffer changeEventRingBuffer;
+    private final MemberTeamReadModelTracker readModelTracker;
+    private final String insertMember;
+    private final String nextTeamId;
+    private final int batchSize;
+    private final int commitSize;
+
+    public MemberCsvImporter(DataSource dataSource,
+                             EntityManagerFactory emf,
+                             MemberDataVersion memberDataVersion,
+                             MemberUsernameFilter usernameFilter,
+                             MemberChangeEventRingBuffer changeEventRingBuffer,
+                             MemberTeamReadModelTracker readModelTracker,
+                             @Value("${member.import.batch-size:1000}") int batchSize,
+                             @Value("${member.import.commit-size:50000}") int commitSize) {
+        this.dataSource = dataSource;
+        this.memberDataVersion = memberDataVersion;
+        this.usernameFilter = usernameFilter;
+        this.changeEventRingBuffer = changeEventRingBuffer;
+        this.readModelTracker = readModelTracker;
+        final SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        final Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+        this.insertMember = String.format(INSERT_MEMBER, dialect.getSelectSequenceNextValString(sequenceName(sessionFactory, Member.class)));
+        this.nextTeamId = dialect.getSequenceNextValString(sequenceName(sessionFactory, Team.class));
+        this.batchSize = batchSize;
+        this.commitSize = commitSize;
+    }
+
+    /**
+     * 엔티티 id 를 만드는 시퀀스 이름, 한 번에 하나씩 올리는 시퀀스만 같이 쓸 수 있다.
+     * (pooled optimizer 처럼 값을 미리 받아 두는 방식이면 Hibernate 가 쓸 id 와 겹친다)
+     */
+    private static String sequenceName(SessionFactoryImplementor sessionFactory, Class<?> entityClass) {
+        final IdentifierGenerator generator = sessionFactory.getMetamodel().entityPersister(entityClass).getIdentifierGenerator();
+        if (generator instanceof SequenceStyleGenerator) {
+            final DatabaseStructure structure = ((SequenceStyleGenerator) generator).getDatabaseStructure();
+            if (structure.isPhysicalSequence() && structure.getIncrementSize() == 1) {
+                return structure.getName();
+            }
+        }
+        throw new IllegalStateException(entityClass.getSimpleName() + " id 가 increment 1 시퀀스가 아니라서 CSV 적재에 쓸 수 없습니다: " + generator);
+    }
+
+    /**
+     * @return 이번 실행에서 적재한 row 수
+     */
+    public long importFile(Path file, boolean skipHeader) throws IOException, SQLException {
+        final String fileName = file.toAbsolutePath().normalize().toString();
+
+        try (Connection connection = dataSource.getConnection();
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_CHECKPOINT_TABLE);
+            }
+            connection.commit();
+
+            final long[] checkpoint = loadCheckpoint(connection, fileName);
+            final long size = channel.size();
+            long position = checkpoint[0];
+            long totalRows = checkpoint[1];
+            boolean header = skipHeader && position == 0;
+
+            if (position > 0) {
+                log.info("체크포인트부터 이어서 적재: offset={}, rows={}", position, totalRows);
+            }
+
+            final TeamDictionary teams = new TeamDictionary(nextTeamId);
+            final MemberCsvParser parser = new MemberCsvParser();
+            final long start = System.nanoTime();
+            long imported = 0;
+            // 커밋할 때까지 적재한 회원명, 커밋 후 필터에 다시 넣는다
+            final List<String> uncommitted = new ArrayList<>();
+
+            try (PreparedStatement insertMember = connection.prepareStatement(this.insertMember)) {
+                while (position < size) {
+                    final long windowSize = Math.min(WINDOW_SIZE, size - position);
+                    final boolean lastWindow = position + windowSize == size;
+                    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                    final int limit = (int) windowSize;
+
+                    int rowStart = 0;
+                    while (rowStart < limit) {
+                        int rowEnd = indexOf(buffer, (byte) '\n', rowStart, limit);
+                        if (rowEnd < 0) {
+                            if (!lastWindow) {
+                                break; // window 경계에 걸친 row 는 다음 window 에서 처리
+                            }
+                            rowEnd = limit;
+                        }
+
+                        final int lineEnd = rowEnd > rowStart && buffer.get(rowEnd - 1) == '\r' ? rowEnd - 1 : rowEnd;
+                        if (header) {
+                            header = false;
+                        } else if (lineEnd > rowStart) {
+                            addRow(connection, insertMember, teams, parser, buffer, rowStart, lineEnd, uncommitted);
+                            imported++;
+
+                            if (imported % batchSize == 0) {
+                                insertMember.executeBatch();
+                            }
+                            if (imported % commitSize == 0) {
+                                insertMember.executeBatch();
+                                saveCheckpoint(connection, fileName, Math.min(size, position + rowEnd + 1), totalRows + imported);
+                                connection.commit();
+                                afterCommit(fileName, uncommitted, teams);
+                                logThroughput(totalRows + imported, imported, start);
+                            }
+                        }
+                        rowStart = rowEnd + 1;
+                    }
+
+                    if (rowStart == 0) {
+                        throw new IllegalStateException("row 가 window 크기보다 깁니다. offset=" + position);
+                    }
+                    position = Math.min(size, position + rowStart);
+                }
+
+                insertMember.executeBatch();
+                saveCheckpoint(connection, fileName, position, totalRows + imported);
+                connection.commit();
+                afterCommit(fileName, uncommitted, teams);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+
+            logThroughput(totalRows + imported, imported, start);
+            return imported;
+        }
+    }
+
+    /**
+     * 커밋 전에 필터에 넣은 이름은 그 사이 시작한 rebuild 의 새 필터에서 빠질 수 있으므로 커밋 후에 다시 넣는다.
+     * 새로 넣은 회원 id 는 모르므로 Member 변경 이벤트는 범위(테이블 전체)로 발행하고 member_team 은 다시 만들게 한다.
+     * 커밋마다 데이터 버전을 올린다. (적재가 길어도 /v2, /v3 가 이전 페이지로 304 를 주지 않도록)
+     */
+    private void afterCommit(String fileName, List<String> usernames, TeamDictionary teams) {
+        if (usernames.isEmpty() && teams.created.isEmpty()) {
+            return;
+        }
+        memberDataVersion.markWritten();
+        usernameFilter.putCommitted(usernames);
+        usernames.clear();
+        for (Long teamId : teams.created) {
+            changeEventRingBuffer.publish(MemberChangeEvent.row(MemberChangeEvent.Type.INSERT, "Team", teamId));
+        }
+        teams.created.clear();
+        changeEventRingBuffer.publish(MemberChangeEvent.range(MemberChangeEvent.Type.INSERT, "Member", null));
+        readModelTracker.markStale("CSV 적재 " + fileName);
+    }
+
+    private void addRow(Connection connection, PreparedStatement insertMember, TeamDictionary teams, MemberCsvParser parser,
+                        MappedByteBuffer buffer, int start, int end, List<String> uncommitted) throws SQLException {
+        parser.parse(buffer, start, end);
+
+        insertMember.setInt(1, parser.age());
+        if (!parser.hasTeam()) {
+            insertMember.setNull(2, Types.BIGINT);
+        } else {
+            insertMember.setLong(2, teams.resolve(connection, parser.teamBuffer(), parser.teamFrom(), parser.teamLength()));
+        }
+        final String username = parser.username();
+        insertMember.setString(3, username);
+        // 이미 소문자면 toLowerCase 는 같은 String 을 돌려준다.
+        insertMember.setString(4, Member.normalizeUsername(username));
+        usernameFilter.put(username);
+        uncommitted.add(username);
+        insertMember.addBatch();
+    }
+
+    private long[] loadCheckpoint(Connection connection, String fileName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_CHECKPOINT)) {
+            statement.setString(1, fileName);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? new long[]{rs.getLong(1), rs.getLong(2)} : new long[]{0, 0};
+            }
+        }
+    }
+
+    private void saveCheckpoint(Connection connection, String fileName, long offset, long rows) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(MERGE_CHECKPOINT)) {
+            statement.setString(1, fileName);
+            statement.setLong(2, offset);
+            statement.setLong(3, rows);
+            statement.executeUpdate();
+        }
+    }
+
+    private void logThroughput(long totalRows, long imported, long start) {
+        final double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        log.info("회원 적재: 전체 {}건, 이번 실행 {}건, 초당 {}건", totalRows, imported, (long) (imported / seconds));
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, byte target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 팀명(바이트) -> team_id, open addressing
+     * 조회는 버퍼의 바이트를 그대로 비교하기 때문에 이미 본 팀명이면 객체를 만들지 않는다.
+     */
+    private static final class TeamDictionary {
+
+        private final String nextId;
+        private byte[][] keys = new byte[64][];
+        private long[] ids = new long[64];
+        private int size;
+        // 이번 커밋 단위에서 새로 만든 팀 (커밋 후 이벤트 발행)
+        private final List<Long> created = new ArrayList<>();
+
+        TeamDictionary(String nextId) {
+            this.nextId = nextId;
+        }
+
+        long resolve(Connection connection, ByteBuffer buffer, int from, int length) throws SQLException {
+            final int hash = hash(buffer, from, length);
+            int slot = hash & (keys.length - 1);
+            while (keys[slot] != null) {
+                if (matches(keys[slot], buffer, from, length)) {
+                    return ids[slot];
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+
+            final byte[] key = new byte[length];
+            buffer.get(from, key, 0, length);
+            final long id = findOrCreateTeam(connection, new String(key, StandardCharsets.UTF_8));
+            put(key, id);
+            return id;
+        }
+
+        private void put(byte[] key, long id) {
+            if ((size + 1) * 2 > keys.length) {
+                final byte[][] oldKeys = keys;
+                final long[] oldIds = ids;
+                keys = new byte[oldKeys.length * 2][];
+                ids = new long[oldKeys.length * 2];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        put(oldKeys[i], oldIds[i]);
+                    }
+                }
+            }
+
+            int slot = Arrays.hashCode(key) & (keys.length - 1);
+            while (keys[slot] != null) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            ids[slot] = id;
+            size++;
+        }
+
+        private long findOrCreateTeam(Connection connection, String name) throws SQLException {
+            try (PreparedStatement select = connection.prepareStatement(SELECT_TEAM)) {
+                select.setString(1, name);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getLong(1);
+                    }
+                }
+            }
+
+            final long id;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(nextId)) {
+                rs.next();
+                id = rs.getLong(1);
+            }
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_TEAM)) {
+                insert.setLong(1, id);
+                insert.setString(2, name);
+                insert.executeUpdate();
+            }
+            created.add(id);
+            return id;
+        }
+
+        /**
+         * Arrays.hashCode(byte[]) 와 같은 값
+         */
+        private static int hash(ByteBuffer buffer, int from, int length) {
+            int hash = 1;
+            for (int i = from; i < from + length; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            return hash;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int from, int length) {
+            if (key.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key[i] != buffer.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
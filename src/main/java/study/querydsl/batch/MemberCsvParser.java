@@ -0,0 +1,153 @@
+package study.querydsl.batch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * username,age,teamName 한 줄 파싱 (RFC 4180 따옴표)
+ * - 필드를 "..." 로 감싸면 쉼표를 쓸 수 있고 따옴표는 "" 로 쓴다. 줄바꿈은 필드 안에 쓸 수 없다. (줄 단위로 나눈 뒤 파싱)
+ * - 따옴표 없는 필드는 버퍼 위치만 기록하고, 따옴표 필드만 scratch 에 풀어 쓴다.
+ * - 필드 수가 다르거나 따옴표가 맞지 않거나 나이가 숫자가 아니면 IllegalArgumentException
+ * 한 인스턴스를 row 마다 다시 쓴다. (스레드 하나에서만)
+ */
+final class MemberCsvParser {
+
+    private static final int USERNAME = 0;
+    private static final int AGE = 1;
+    private static final int TEAM = 2;
+    private static final int FIELDS = 3;
+
+    private byte[] scratch = new byte[256];
+    private ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+    private int scratchSize;
+
+    private ByteBuffer source;
+    private final boolean[] quoted = new boolean[FIELDS];
+    private final int[] from = new int[FIELDS];
+    private final int[] length = new int[FIELDS];
+
+    void parse(ByteBuffer buffer, int start, int end) {
+        source = buffer;
+        scratchSize = 0;
+
+        int position = start;
+        for (int field = 0; field < FIELDS; field++) {
+            if (field > 0) {
+                if (position >= end || buffer.get(position) != ',') {
+                    throw malformed("username,age,teamName 형식이 아닙니다", buffer, start, end);
+                }
+                position++;
+            }
+            position = position < end && buffer.get(position) == '"'
+                    ? quotedField(field, buffer, position, start, end)
+                    : plainField(field, buffer, position, start, end);
+        }
+        if (position != end) {
+            throw malformed("username,age,teamName 형식이 아닙니다", buffer, start, end);
+        }
+    }
+
+    String username() {
+        final byte[] bytes = new byte[length[USERNAME]];
+        buffer(USERNAME).get(from[USERNAME], bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    int age() {
+        final ByteBuffer buffer = buffer(AGE);
+        final int end = from[AGE] + length[AGE];
+        if (length[AGE] == 0) {
+            throw new IllegalArgumentException("나이가 비어 있습니다");
+        }
+        int value = 0;
+        for (int i = from[AGE]; i < end; i++) {
+            final int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed("나이가 숫자가 아닙니다", buffer, from[AGE], end);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * 팀명이 비어 있으면 팀 없음
+     */
+    boolean hasTeam() {
+        return length[TEAM] > 0;
+    }
+
+    /**
+     * 팀명 바이트가 있는 버퍼, teamFrom/teamLength 와 같이 쓴다. (TeamDictionary 가 바이트를 그대로 비교)
+     */
+    ByteBuffer teamBuffer() {
+        return buffer(TEAM);
+    }
+
+    int teamFrom() {
+        return from[TEAM];
+    }
+
+    int teamLength() {
+        return length[TEAM];
+    }
+
+    private ByteBuffer buffer(int field) {
+        return quoted[field] ? scratchBuffer : source;
+    }
+
+    private int plainField(int field, ByteBuffer buffer, int position, int start, int end) {
+        int i = position;
+        while (i < end && buffer.get(i) != ',') {
+            if (buffer.get(i) == '"') {
+                throw malformed("따옴표로 감싸지 않은 필드에 따옴표가 있습니다", buffer, start, end);
+            }
+            i++;
+        }
+        quoted[field] = false;
+        from[field] = position;
+        length[field] = i - position;
+        return i;
+    }
+
+    private int quotedField(int field, ByteBuffer buffer, int position, int start, int end) {
+        quoted[field] = true;
+        from[field] = scratchSize;
+        int i = position + 1;
+        while (true) {
+            if (i >= end) {
+                throw malformed("따옴표가 닫히지 않았습니다", buffer, start, end);
+            }
+            final byte b = buffer.get(i);
+            if (b == '"') {
+                if (i + 1 < end && buffer.get(i + 1) == '"') {
+                    append(b);
+                    i += 2;
+                    continue;
+                }
+                if (i + 1 < end && buffer.get(i + 1) != ',') {
+                    throw malformed("닫는 따옴표 뒤에 쉼표가 없습니다", buffer, start, end);
+                }
+                length[field] = scratchSize - from[field];
+                return i + 1;
+            }
+            append(b);
+            i++;
+        }
+    }
+
+    private void append(byte b) {
+        if (scratchSize == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratch.length * 2);
+            scratchBuffer = ByteBuffer.wrap(scratch);
+        }
+        scratch[scratchSize++] = b;
+    }
+
+    private static IllegalArgumentException malformed(String message, ByteBuffer buffer, int from, int to) {
+        final byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes, 0, bytes.length);
+        return new IllegalArgumentException(message + ": " + new String(bytes, StandardCharsets.UTF_8));
+    }
+}
@@ -1,36 +1,152 @@
 package study.querydsl.controller;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import reactor.core.publisher.Flux;
+import study.querydsl.batch.MemberBatchImporter;
+import study.querydsl.batch.MemberBatchParseException;
+import study.querydsl.dto.MemberBatchError;
+import study.querydsl.dto.MemberBatchResult;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberDataVersion;
 import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberPagePrefetcher;
+import study.querydsl.repository.MemberReactiveRepository;
 import study.querydsl.repository.MemberRepository;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
-@RequiredArgsConstructor
 @RestController
 public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberDataVersion memberDataVersion;
+    private final MemberBatchImporter memberBatchImporter;
+    private final MemberReactiveRepository memberReactiveRepository;
+    private final MemberPagePrefetcher memberPagePrefetcher;
+
+    /**
+     * count(*) over() 한 번으로 페이징할 엔드포인트 (v2, v3)
+     */
+    private final Set<String> windowCountEndpoints;
+
+    public MemberController(MemberJpaRepository memberJpaRepository,
+                            MemberRepository memberRepository,
+                            MemberDataVersion memberDataVersion,
+                            MemberBatchImporter memberBatchImporter,
+                            MemberReactiveRepository memberReactiveRepository,
+                            MemberPagePrefetcher memberPagePrefetcher,
+                            @Value("${member.paging.window-count:}") String[] windowCountEndpoints) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.memberRepository = memberRepository;
+        this.memberDataVersion = memberDataVersion;
+        this.memberBatchImporter = memberBatchImporter;
+        this.memberReactiveRepository = memberReactiveRepository;
+        this.memberPagePrefetcher = memberPagePrefetcher;
+        this.windowCountEndpoints = Set.copyOf(Arrays.asList(windowCountEndpoints));
+    }
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMember1(MemberSearchCondition condition) {
         return memberJpaRepository.search(condition);
     }
 
+    /**
+     * 데이터 버전이 그대로면 쿼리를 실행하지 않고 304 Not Modified 를 반환한다.
+     * member.prefetch.enabled 면 다음 페이지를 미리 읽어 둔다. (v3 도 같다)
+     */
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMember2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+    public Page<MemberTeamDto> searchMember2(MemberSearchCondition condition, Pageable pageable,
+                                             WebRequest request, HttpServletResponse response) {
+        if (notModified(condition, pageable, request, response)) {
+            return null;
+        }
+        if (windowCountEndpoints.contains("v2")) {
+            return memberPagePrefetcher.page("v2", condition, pageable, page -> memberRepository.searchPageWindowCount(condition, page));
+        }
+        return memberPagePrefetcher.page("v2", condition, pageable, page -> memberRepository.searchPageSimple(condition, page));
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMember3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public Page<MemberTeamDto> searchMember3(MemberSearchCondition condition, Pageable pageable,
+                                             WebRequest request, HttpServletResponse response) {
+        if (notModified(condition, pageable, request, response)) {
+            return null;
+        }
+        if (windowCountEndpoints.contains("v3")) {
+            return memberPagePrefetcher.page("v3", condition, pageable, page -> memberRepository.searchPageWindowCount(condition, page));
+        }
+        return memberPagePrefetcher.page("v3", condition, pageable, page -> memberRepository.searchPageComplex(condition, page));
+    }
+
+    /**
+     * v1 과 같은 검색을 R2DBC 로 실행하고 한 줄에 하나씩(NDJSON) 스트리밍한다.
+     * DB 를 기다리는 동안 서블릿 스레드를 잡지 않고, 클라이언트가 읽는 속도에 맞춰 row 를 가져온다.
+     * (H2 드라이버는 내부가 블로킹이라 그동안 boundedElastic 스레드가 대신 막힌다, MemberReactiveRepository 참고)
+     */
+    @GetMapping(value = "/v4/members", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MemberTeamDto> searchMember4(MemberSearchCondition condition) {
+        return memberReactiveRepository.search(condition);
+    }
+
+    /**
+     * v1 과 같은 검색, 큰 결과(분석용)를 컬럼 배열에 담아서 row 객체 없이 직렬화한다. 응답 모양은 v1 과 같다.
+     */
+    @GetMapping("/v5/members")
+    public MemberTeamColumns searchMember5(MemberSearchCondition condition) {
+        return memberRepository.searchColumns(condition);
+    }
+
+    /**
+     * 회원 대량 등록, 한 줄에 회원 하나(NDJSON)
+     */
+    @PostMapping(value = "/members/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public MemberBatchResult saveMembers(InputStream body) throws IOException {
+        return memberBatchImporter.importMembers(body);
+    }
+
+    /**
+     * 읽을 수 없는 줄은 클라이언트 오류, 몇 번째 줄인지 알려준다.
+     */
+    @ExceptionHandler(MemberBatchParseException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public MemberBatchError batchParseError(MemberBatchParseException e) {
+        return new MemberBatchError(e.getLine(), e.getMessage());
+    }
+
+    /**
+     * 응답 포맷(JSON, Smile, CBOR)은 Accept 로 정해지므로 ETag 에 Accept 를 넣고 Vary: Accept 를 붙인다.
+     * (304 응답에도 붙어야 중간 캐시가 포맷별로 따로 저장한다)
+     */
+    private boolean notModified(MemberSearchCondition condition, Pageable pageable, WebRequest request, HttpServletResponse response) {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return request.checkNotModified(etag(condition, pageable, request.getHeader(HttpHeaders.ACCEPT)));
+    }
+
+    /**
+     * weak ETag = 데이터 버전 + 검색 조건/페이지/Accept 해시
+     */
+    private String etag(MemberSearchCondition condition, Pageable pageable, String accept) {
+        final int shape = Objects.hash(condition, pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort(), accept);
+        return "W/\"" + memberDataVersion.current() + "-" + Integer.toHexString(shape) + "\"";
     }
 }
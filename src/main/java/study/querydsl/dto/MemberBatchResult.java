@@ -0,0 +1,10 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class MemberBatchResult {
+
+    private final long inserted;
+    private final long elapsedMillis;
+}
@@ -0,0 +1,14 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * 배치 등록 요청의 한 줄(NDJSON)
+ */
+@Data
+public class MemberBatchRow {
+
+    private String username;
+    private int age;
+    private String teamName;
+}
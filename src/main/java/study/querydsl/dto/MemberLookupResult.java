@@ -0,0 +1,17 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+
+/**
+ * 여러 키로 한 번에 찾은 결과
+ * found 는 입력한 키 순서대로, missing 은 일치하는 회원이 없는 키
+ */
+@Data
+public class MemberLookupResult<K> {
+
+    private final List<Member> found;
+    private final List<K> missing;
+}
@@ -2,6 +2,8 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import java.util.StringJoiner;
+
 @Data
 public class MemberSearchCondition {
     // 회원명, 팀명, 나이(ageGoe, ageLoe)
@@ -10,4 +12,27 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+    // true 면 회원명을 대소문자 구분 없이 비교 (member.username_lower)
+    private boolean ignoreCase;
+
+    /**
+     * 값은 빼고 어떤 조건이 있는지만 (예: "username,ageGoe"), 조건이 없으면 "none"
+     * 모니터링에서 같은 모양의 쿼리끼리 묶을 때 사용
+     */
+    public String shape() {
+        final StringJoiner shape = new StringJoiner(",");
+        if (username != null) {
+            shape.add(ignoreCase ? "username(ignoreCase)" : "username");
+        }
+        if (teamName != null) {
+            shape.add("teamName");
+        }
+        if (ageGoe != null) {
+            shape.add("ageGoe");
+        }
+        if (ageLoe != null) {
+            shape.add("ageLoe");
+        }
+        return shape.length() == 0 ? "none" : shape.toString();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,207 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 큰 검색 결과용 MemberTeamDto 목록, row 마다 객체를 만들지 않고 컬럼별 배열에 담는다. (struct of arrays)
+ * - memberId, age: long[], int[]
+ * - 팀: (teamId, teamName) 사전의 번호, 팀이 없으면 -1
+ * - 회원명: 한 char[] 에 이어 붙이고 row 마다 시작 위치와 길이만 들고 있는다. (row 마다 String 을 붙잡지 않는다)
+ * JSON 은 List<MemberTeamDto> 와 같은 모양으로 나가지만 직렬화할 때도 row 객체를 만들지 않는다.
+ */
+@JsonSerialize(using = MemberTeamColumns.Serializer.class)
+public class MemberTeamColumns {
+
+    private static final int NONE = -1;
+
+    private int size;
+    private long[] memberIds;
+    private int[] ages;
+    private int[] usernameStarts;
+    private int[] usernameLengths;
+    private int[] teamRefs;
+
+    private char[] usernameChars;
+    private int usernameCharsSize;
+    private final List<String> teamNames = new ArrayList<>();
+    private long[] teamIds = new long[16];
+    private final Map<Long, Integer> teamIndex = new HashMap<>();
+    // 같은 팀이 이어지는 경우 사전 조회(Long 박싱)를 건너뛴다
+    private long lastTeamId;
+    private int lastTeamRef = NONE;
+
+    public MemberTeamColumns() {
+        this(1_024);
+    }
+
+    /**
+     * @param capacity 예상 row 수, 넘으면 1.5 배씩 늘린다.
+     */
+    public MemberTeamColumns(int capacity) {
+        final int initial = Math.max(16, capacity);
+        this.memberIds = new long[initial];
+        this.ages = new int[initial];
+        this.usernameStarts = new int[initial];
+        this.usernameLengths = new int[initial];
+        this.teamRefs = new int[initial];
+        this.usernameChars = new char[initial * 8];
+    }
+
+    /**
+     * 이미 사전에 있는 팀이면 add 에 넘긴 팀 이름은 쓰지 않는다. (호출한 쪽이 이름을 읽지 않아도 된다)
+     */
+    public boolean hasTeam(long teamId) {
+        return (lastTeamRef != NONE && lastTeamId == teamId) || teamIndex.containsKey(teamId);
+    }
+
+    public void add(long memberId, String username, int age, long teamId, String teamName) {
+        add(memberId, username, age, teamRef(teamId, teamName));
+    }
+
+    public void addWithoutTeam(long memberId, String username, int age) {
+        add(memberId, username, age, NONE);
+    }
+
+    private void add(long memberId, String username, int age, int teamRef) {
+        if (size == memberIds.length) {
+            grow();
+        }
+        memberIds[size] = memberId;
+        ages[size] = age;
+        addUsername(username);
+        teamRefs[size] = teamRef;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long memberId(int row) {
+        return memberIds[checkRow(row)];
+    }
+
+    public String username(int row) {
+        final int length = usernameLengths[checkRow(row)];
+        return length != NONE ? new String(usernameChars, usernameStarts[row], length) : null;
+    }
+
+    public int age(int row) {
+        return ages[checkRow(row)];
+    }
+
+    public Long teamId(int row) {
+        final int ref = teamRefs[checkRow(row)];
+        return ref != NONE ? teamIds[ref] : null;
+    }
+
+    public String teamName(int row) {
+        final int ref = teamRefs[checkRow(row)];
+        return ref != NONE ? teamNames.get(ref) : null;
+    }
+
+    /**
+     * 배열이 차지하는 대략적인 힙 크기 (팀 이름 문자열 제외)
+     */
+    public long arrayBytes() {
+        return memberIds.length * 8L + ages.length * 4L + usernameStarts.length * 4L + usernameLengths.length * 4L
+                + teamRefs.length * 4L + usernameChars.length * 2L + teamIds.length * 8L + teamNames.size() * 4L;
+    }
+
+    private void addUsername(String username) {
+        if (username == null) {
+            usernameLengths[size] = NONE;
+            return;
+        }
+        final int length = username.length();
+        if (usernameCharsSize + length > usernameChars.length) {
+            usernameChars = Arrays.copyOf(usernameChars, Math.max(usernameCharsSize + length, usernameChars.length + (usernameChars.length >> 1)));
+        }
+        username.getChars(0, length, usernameChars, usernameCharsSize);
+        usernameStarts[size] = usernameCharsSize;
+        usernameLengths[size] = length;
+        usernameCharsSize += length;
+    }
+
+    private int teamRef(long teamId, String teamName) {
+        if (lastTeamRef != NONE && lastTeamId == teamId) {
+            return lastTeamRef;
+        }
+        Integer ref = teamIndex.get(teamId);
+        if (ref == null) {
+            if (teamNames.size() == teamIds.length) {
+                teamIds = Arrays.copyOf(teamIds, teamIds.length * 2);
+            }
+            ref = teamNames.size();
+            teamIds[ref] = teamId;
+            teamNames.add(teamName);
+            teamIndex.put(teamId, ref);
+        }
+        lastTeamId = teamId;
+        lastTeamRef = ref;
+        return ref;
+    }
+
+    private void grow() {
+        final int capacity = memberIds.length + (memberIds.length >> 1);
+        memberIds = Arrays.copyOf(memberIds, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        usernameStarts = Arrays.copyOf(usernameStarts, capacity);
+        usernameLengths = Arrays.copyOf(usernameLengths, capacity);
+        teamRefs = Arrays.copyOf(teamRefs, capacity);
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+        }
+        return row;
+    }
+
+    /**
+     * [{"memberId":1,"username":"member1","age":10,"teamId":1,"teamName":"teamA"}, ...]
+     */
+    public static class Serializer extends StdSerializer<MemberTeamColumns> {
+
+        public Serializer() {
+            super(MemberTeamColumns.class);
+        }
+
+        @Override
+        public void serialize(MemberTeamColumns columns, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(columns, columns.size);
+            for (int row = 0; row < columns.size; row++) {
+                gen.writeStartObject();
+                gen.writeNumberField("memberId", columns.memberIds[row]);
+                final int usernameLength = columns.usernameLengths[row];
+                if (usernameLength != NONE) {
+                    gen.writeFieldName("username");
+                    gen.writeString(columns.usernameChars, columns.usernameStarts[row], usernameLength);
+                } else {
+                    gen.writeNullField("username");
+                }
+                gen.writeNumberField("age", columns.ages[row]);
+                final int teamRef = columns.teamRefs[row];
+                if (teamRef != NONE) {
+                    gen.writeNumberField("teamId", columns.teamIds[teamRef]);
+                    gen.writeStringField("teamName", columns.teamNames.get(teamRef));
+                } else {
+                    gen.writeNullField("teamId");
+                    gen.writeNullField("teamName");
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
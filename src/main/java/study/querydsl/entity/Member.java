@@ -1,22 +1,38 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
 
 import javax.persistence.*;
+import java.util.Locale;
 
 @ToString(of = {"id", "username", "age"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Setter
 @Getter
 @Entity
+@Table(indexes = @Index(name = "idx_member_username_lower", columnList = "username_lower"))
 public class Member {
 
+    /**
+     * MemberCsvImporter 가 JDBC insert 에서 같은 시퀀스를 쓴다. (매핑에서 이름을 읽는다)
+     * allocationSize 가 1 이 아닌 @SequenceGenerator 로 바꾸면 적재가 기동 시 실패한다.
+     */
     @Column(name = "member_id")
     @Id @GeneratedValue
     private Long id;
 
     private String username;
 
+    /**
+     * 대소문자 무시 검색용 (MemberSearchCondition.ignoreCase), setUsername 에서 같이 바뀐다.
+     * lower(username) 비교는 인덱스를 못 타기 때문에 정규화한 값을 따로 저장한다.
+     * 벌크 update 로 username 을 바꿀 때는 이 컬럼도 같이 set 해야 한다.
+     */
+    @Column(name = "username_lower")
+    @Setter(AccessLevel.NONE)
+    private String usernameLower;
+
     private int age;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -32,15 +48,38 @@ public class Member {
     }
 
     public Member(String username, int age, Team team) {
-        this.username = username;
+        setUsername(username);
         this.age = age;
         if (team != null) {
             changeTeam(team);
         }
     }
 
+    public void setUsername(String username) {
+        this.username = username;
+        this.usernameLower = normalizeUsername(username);
+    }
+
+    public static String normalizeUsername(String username) {
+        return username != null ? username.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * 양쪽 members 컬렉션은 이미 로딩된 경우에만 맞춘다. (로딩 안 된 컬렉션을 초기화하지 않도록)
+     * 여러 명을 옮길 때는 MemberRepository.changeTeam (벌크 update) 사용
+     */
     public void changeTeam(Team team) {
+        final Team previous = this.team;
         this.team = team;
-        team.getMembers().add(this);
+        if (isMembersLoaded(previous)) {
+            previous.getMembers().remove(this);
+        }
+        if (isMembersLoaded(team)) {
+            team.getMembers().add(this);
+        }
+    }
+
+    private static boolean isMembersLoaded(Team team) {
+        return team != null && Hibernate.isInitialized(team) && Hibernate.isInitialized(team.getMembers());
     }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Synchronize;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * 회원 + 팀명 비정규화 조회 테이블 (member.read-model.enabled=true 일 때 사용)
+ * MemberTeamReadModel 이 Member/Team 쓰기와 같은 트랜잭션에서 갱신한다. 애플리케이션에서 직접 수정하지 않는다.
+ * member/team 에 flush 안 된 변경이 있으면 조회 전에 flush 되도록 @Synchronize 로 묶어둔다.
+ */
+@ToString(of = {"memberId", "username", "age", "teamId", "teamName"})
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+@Immutable
+@Synchronize({"member", "team"})
+@Entity
+@Table(name = "member_team", indexes = {
+        @Index(name = "idx_member_team_team_id", columnList = "team_id"),
+        @Index(name = "idx_member_team_team_name", columnList = "team_name"),
+        @Index(name = "idx_member_team_username", columnList = "username"),
+        @Index(name = "idx_member_team_username_lower", columnList = "username_lower")})
+public class MemberTeamRead {
+
+    @Id
+    @Column(name = "member_id")
+    private Long memberId;
+
+    private String username;
+
+    @Column(name = "username_lower")
+    private String usernameLower;
+
+    private int age;
+
+    @Column(name = "team_id")
+    private Long teamId;
+
+    @Column(name = "team_name")
+    private String teamName;
+}
@@ -0,0 +1,177 @@
+package study.querydsl.event;
+
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * member/team update, delete 문장이 엔티티 flush 인지 벌크 DML 인지 가른다.
+ * SQL 모양으로는 구별할 수 없다. (update(member).where(member.id.eq(id)) 도, 원소 하나인 in 도 "where member_id=?" 가 된다)
+ * - StatementInspector 에서 문장을 보면 expect 로 등록한다.
+ * - Hibernate 는 엔티티 update/delete 를 실행한 직후 같은 스레드에서 PostUpdate/PostDelete 를 부르므로, 그 이벤트가 오면 엔티티 flush
+ * - 이벤트 없이 다음 문장이 준비되거나(체인 맨 앞의 inspect) 트랜잭션이 커밋/롤백되면 벌크로 확정한다.
+ * StatementInspector 로도 쓰이기 때문에 EntityManagerFactory 는 모든 빈이 만들어진 뒤에 가져온다.
+ */
+@Component
+public class MemberBulkStatementTracker implements PostUpdateEventListener, PostDeleteEventListener, SmartInitializingSingleton {
+
+    /**
+     * expect 로 등록한 문장의 결과
+     */
+    public interface Outcome {
+
+        /**
+         * 엔티티 flush 였다. (엔티티 이벤트 리스너가 처리한다)
+         */
+        default void entity() {
+        }
+
+        /**
+         * 벌크 DML 이었다.
+         * @param committed false 면 아직 커밋 전인 Spring 트랜잭션 안 (커밋 후 처리는 트랜잭션 동기화로 등록)
+         */
+        void bulk(boolean committed);
+
+        /**
+         * 벌크였지만 트랜잭션이 롤백됐다.
+         */
+        default void rolledBack() {
+        }
+    }
+
+    private final ObjectProvider<EntityManagerFactory> emf;
+    private final ThreadLocal<List<Pending>> pending = ThreadLocal.withInitial(ArrayList::new);
+
+    public MemberBulkStatementTracker(ObjectProvider<EntityManagerFactory> emf) {
+        this.emf = emf;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        final EventListenerRegistry listeners = emf.getObject().unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        // 다른 리스너가 JPA 로 SQL 을 실행하면 그 문장의 inspect 가 먼저 벌크로 확정해 버리므로 맨 앞에 둔다.
+        listeners.prependListeners(EventType.POST_UPDATE, this);
+        listeners.prependListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * StatementInspector 체인 맨 앞에서 호출, 앞 문장 중 엔티티 이벤트가 오지 않은 것을 벌크로 확정한다.
+     */
+    public String inspect(String sql) {
+        settle();
+        return sql;
+    }
+
+    /**
+     * 이 스레드에서 방금 준비한 문장, entityName 은 "Member" 또는 "Team"
+     */
+    public void expect(String entityName, Outcome outcome) {
+        pending.get().add(new Pending(entityName, outcome));
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    settle();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MemberBulkStatementTracker.this);
+                    complete(status == STATUS_COMMITTED);
+                }
+            });
+        }
+    }
+
+    /**
+     * 남은 문장을 지금 벌크로 확정한다. 벌크 결과를 같은 트랜잭션에서 직접 맞추는 쪽이 먼저 부른다. (MemberTeamReadModel.refresh)
+     */
+    public void settle() {
+        final List<Pending> statements = drain();
+        if (statements.isEmpty()) {
+            return;
+        }
+        final boolean committed = !TransactionSynchronizationManager.isSynchronizationActive();
+        statements.forEach(statement -> statement.outcome.bulk(committed));
+    }
+
+    /**
+     * 커밋 처리(flush) 중에 나간 문장까지 끝났다. 여기서는 트랜잭션 동기화를 더 등록할 수 없다.
+     */
+    private void complete(boolean committed) {
+        for (Pending statement : drain()) {
+            if (committed) {
+                statement.outcome.bulk(true);
+            } else {
+                statement.outcome.rolledBack();
+            }
+        }
+    }
+
+    private List<Pending> drain() {
+        final List<Pending> statements = pending.get();
+        if (statements.isEmpty()) {
+            return statements;
+        }
+        final List<Pending> drained = new ArrayList<>(statements);
+        statements.clear();
+        return drained;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        entityWritten(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        entityWritten(event.getEntity());
+    }
+
+    private void entityWritten(Object entity) {
+        if (!(entity instanceof Member || entity instanceof Team)) {
+            return;
+        }
+        final String entityName = entity instanceof Member ? "Member" : "Team";
+        final List<Pending> statements = pending.get();
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            if (statements.get(i).entityName.equals(entityName)) {
+                statements.remove(i).outcome.entity();
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private static final class Pending {
+        private final String entityName;
+        private final Outcome outcome;
+
+        private Pending(String entityName, Outcome outcome) {
+            this.entityName = entityName;
+            this.outcome = outcome;
+        }
+    }
+}
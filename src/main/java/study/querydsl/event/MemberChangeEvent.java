@@ -0,0 +1,45 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Member/Team 변경 이벤트 (커밋된 변경만 발행된다)
+ * - 엔티티 단위 변경: id 가 있다.
+ * - 벌크 update/delete: id 가 없고 predicate 에 대상 범위(SQL where 절)가 들어있다.
+ */
+@Getter
+@ToString
+public class MemberChangeEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Type type;
+    private final String entityName;
+    private final Long id;
+    private final String predicate;
+
+    private MemberChangeEvent(Type type, String entityName, Long id, String predicate) {
+        this.type = type;
+        this.entityName = entityName;
+        this.id = id;
+        this.predicate = predicate;
+    }
+
+    public static MemberChangeEvent row(Type type, String entityName, Long id) {
+        return new MemberChangeEvent(type, entityName, id, null);
+    }
+
+    /**
+     * @param predicate 벌크 SQL 의 where 절, 없으면 테이블 전체
+     */
+    public static MemberChangeEvent range(Type type, String entityName, String predicate) {
+        return new MemberChangeEvent(type, entityName, null, predicate);
+    }
+
+    public boolean isRange() {
+        return id == null;
+    }
+}
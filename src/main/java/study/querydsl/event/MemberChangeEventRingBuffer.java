@@ -0,0 +1,161 @@
+package study.querydsl.event;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 고정 크기 lock-free ring buffer, 발행자 여러 명 / 구독자 여러 명
+ * - 발행: 시퀀스를 하나 받아서 슬롯에 CAS 로 쓴다. 구독자를 기다리지 않는다.
+ * - 구독: 구독자마다 자기 커서를 가진다. 한 바퀴 이상 뒤처지면 덮어쓰인 이벤트는 건너뛰고 dropped 로 센다.
+ */
+@Component
+public class MemberChangeEventRingBuffer {
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public MemberChangeEventRingBuffer(@Value("${member.change-events.capacity:8192}") int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity 는 2의 거듭제곱이어야 합니다: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 시퀀스를 받은 뒤 슬롯에 쓰기 전에 다른 발행자가 한 바퀴 뒤의 시퀀스를 같은 슬롯에 먼저 쓸 수 있다.
+     * 슬롯의 시퀀스가 자기보다 작을 때만 CAS 로 쓰고, 이미 더 새 이벤트가 있으면 버린다. (어차피 덮어쓰일 이벤트)
+     */
+    public void publish(MemberChangeEvent event) {
+        final long sequence = nextSequence.getAndIncrement();
+        final int index = (int) (sequence & mask);
+        final Slot slot = new Slot(sequence, event);
+        while (true) {
+            final Slot current = slots.get(index);
+            if (current != null && current.sequence > sequence) {
+                return;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 지금 이후에 발행되는 이벤트부터 읽는 커서
+     */
+    public Cursor cursor() {
+        return new Cursor(nextSequence.get());
+    }
+
+    /**
+     * 전용 스레드에서 listener 를 호출하는 구독
+     */
+    public Subscription subscribe(String name, Consumer<MemberChangeEvent> listener) {
+        final Subscription subscription = new Subscription(cursor(), listener);
+        final Thread thread = new Thread(subscription, "member-change-" + name);
+        thread.setDaemon(true);
+        subscriptions.add(subscription);
+        thread.start();
+        return subscription;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.forEach(Subscription::close);
+    }
+
+    private static final class Slot {
+        private final long sequence;
+        private final MemberChangeEvent event;
+
+        private Slot(long sequence, MemberChangeEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+    public final class Cursor {
+
+        private long sequence;
+        private volatile long dropped;
+
+        private Cursor(long sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return 다음 이벤트, 아직 없으면 null
+         */
+        public MemberChangeEvent poll() {
+            while (true) {
+                final Slot slot = slots.get((int) (sequence & mask));
+                if (slot == null || slot.sequence < sequence) {
+                    return null;
+                }
+                if (slot.sequence > sequence) {
+                    // 한 바퀴 이상 뒤처짐, 남아있는 것 중 가장 오래된 이벤트로 이동
+                    final long oldest = slot.sequence - mask;
+                    dropped += oldest - sequence;
+                    sequence = oldest;
+                    continue;
+                }
+                sequence++;
+                return slot.event;
+            }
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+    }
+
+    public static final class Subscription implements Runnable {
+
+        private final Cursor cursor;
+        private final Consumer<MemberChangeEvent> listener;
+        private volatile boolean running = true;
+
+        private Subscription(Cursor cursor, Consumer<MemberChangeEvent> listener) {
+            this.cursor = cursor;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            long idleNanos = 1_000;
+            while (running) {
+                final MemberChangeEvent event = cursor.poll();
+                if (event == null) {
+                    LockSupport.parkNanos(idleNanos);
+                    idleNanos = Math.min(idleNanos * 2, 10_000_000);
+                    continue;
+                }
+                idleNanos = 1_000;
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    // 구독자 하나의 오류가 스트림을 멈추지 않도록 무시
+                }
+            }
+        }
+
+        public long getDropped() {
+            return cursor.getDropped();
+        }
+
+        public void close() {
+            running = false;
+        }
+    }
+}
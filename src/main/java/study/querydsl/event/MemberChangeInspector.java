@@ -0,0 +1,81 @@
+package study.querydsl.event;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 벌크 update/delete(Querydsl update(), delete())는 엔티티 이벤트가 없으므로 SQL 로 잡아서 범위 이벤트로 만든다.
+ * 엔티티 flush 도 같은 모양의 SQL 을 만들기 때문에, 엔티티 이벤트가 없었던 문장만 MemberBulkStatementTracker 가 벌크로 알려준다.
+ * (엔티티 이벤트는 MemberChangeListener 담당)
+ * 트랜잭션 안이면 커밋된 뒤에 발행하고 롤백되면 버린다.
+ */
+public class MemberChangeInspector implements StatementInspector {
+
+    private static final Pattern BULK_STATEMENT = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(update|delete\\s+from)\\s+(member|team)\\b(.*?)(?:\\bwhere\\b(.*))?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final MemberChangeEventRingBuffer ringBuffer;
+    private final MemberBulkStatementTracker bulkStatements;
+
+    public MemberChangeInspector(MemberChangeEventRingBuffer ringBuffer, MemberBulkStatementTracker bulkStatements) {
+        this.ringBuffer = ringBuffer;
+        this.bulkStatements = bulkStatements;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        final Matcher matcher = BULK_STATEMENT.matcher(sql);
+        if (!matcher.find()) {
+            return sql;
+        }
+
+        final String predicate = matcher.group(4) == null ? null : matcher.group(4).trim();
+        final MemberChangeEvent.Type type = matcher.group(1).toLowerCase().startsWith("update")
+                ? MemberChangeEvent.Type.UPDATE
+                : MemberChangeEvent.Type.DELETE;
+        final String entityName = matcher.group(2).equalsIgnoreCase("member") ? "Member" : "Team";
+        final MemberChangeEvent event = MemberChangeEvent.range(type, entityName, predicate);
+        bulkStatements.expect(entityName, committed -> {
+            if (committed) {
+                ringBuffer.publish(event);
+            } else {
+                publishAfterCommit(event);
+            }
+        });
+        return sql;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void publishAfterCommit(MemberChangeEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ringBuffer.publish(event);
+            return;
+        }
+
+        List<MemberChangeEvent> pending = (List<MemberChangeEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            final List<MemberChangeEvent> events = new ArrayList<>();
+            pending = events;
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    events.forEach(ringBuffer::publish);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MemberChangeInspector.this);
+                }
+            });
+        }
+        pending.add(event);
+    }
+}
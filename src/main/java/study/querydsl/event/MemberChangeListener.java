@@ -0,0 +1,84 @@
+package study.querydsl.event;
+
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+
+/**
+ * 엔티티 단위 insert/update/delete 를 커밋 후(post-commit) 이벤트로 받아서 ring buffer 에 발행
+ * (em.persist, 변경 감지, Spring Data save/delete 모두 여기로 온다)
+ */
+@Component
+public class MemberChangeListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final MemberChangeEventRingBuffer ringBuffer;
+
+    public MemberChangeListener(EntityManagerFactory emf, MemberChangeEventRingBuffer ringBuffer) {
+        this.emf = emf;
+        this.ringBuffer = ringBuffer;
+    }
+
+    @PostConstruct
+    public void register() {
+        final EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(MemberChangeEvent.Type.INSERT, event.getEntity(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(MemberChangeEvent.Type.UPDATE, event.getEntity(), event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(MemberChangeEvent.Type.DELETE, event.getEntity(), event.getId());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        final Class<?> type = persister.getMappedClass();
+        return type == Member.class || type == Team.class;
+    }
+
+    private void publish(MemberChangeEvent.Type type, Object entity, Serializable id) {
+        if (entity instanceof Member || entity instanceof Team) {
+            ringBuffer.publish(MemberChangeEvent.row(type, entity.getClass().getSimpleName(), (Long) id));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.monitor;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JFR 파일에서 MemberQueryEvent 를 읽어 메서드 + 조건 모양별로 느린 순서대로 요약한다.
+ * 기록: java -XX:StartFlightRecording=maxage=1h,filename=member.jfr -jar querydsl.jar
+ * 분석: ./gradlew jfrSummary -Pjfr.file=member.jfr [-Pjfr.top=20]
+ */
+public class MemberJfrAnalyzer {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: MemberJfrAnalyzer <recording.jfr> [top]");
+            System.exit(1);
+        }
+        final int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        final Map<String, Shape> shapes = new HashMap<>();
+        try (RecordingFile recording = new RecordingFile(Path.of(args[0]))) {
+            while (recording.hasMoreEvents()) {
+                final RecordedEvent event = recording.readEvent();
+                if (!event.getEventType().getName().equals(MemberQueryEvent.NAME)) {
+                    continue;
+                }
+                final String key = event.getString("method") + " [" + event.getString("shape") + "]";
+                shapes.computeIfAbsent(key, Shape::new).add(event);
+            }
+        }
+
+        final List<Shape> slowest = new ArrayList<>(shapes.values());
+        slowest.sort(Comparator.comparingLong(Shape::p99Micros).reversed());
+
+        System.out.printf("%-70s %8s %10s %10s %10s %10s %8s%n", "method [shape]", "count", "p50(ms)", "p99(ms)", "max(ms)", "avg rows", "avg stmt");
+        for (Shape shape : slowest.subList(0, Math.min(top, slowest.size()))) {
+            System.out.printf("%-70s %8d %10.2f %10.2f %10.2f %10.1f %8.1f%n",
+                    shape.key, shape.count, shape.percentile(0.50) / 1000.0, shape.p99Micros() / 1000.0,
+                    shape.percentile(1.0) / 1000.0, (double) shape.rows / shape.count, (double) shape.statements / shape.count);
+        }
+    }
+
+    private static class Shape {
+
+        private final String key;
+        private long[] durationsMicros = new long[64];
+        private int count;
+        private long rows;
+        private long statements;
+        private boolean sorted;
+
+        Shape(String key) {
+            this.key = key;
+        }
+
+        void add(RecordedEvent event) {
+            if (count == durationsMicros.length) {
+                durationsMicros = Arrays.copyOf(durationsMicros, count * 2);
+            }
+            durationsMicros[count++] = event.getDuration().toNanos() / 1000;
+            rows += event.getLong("rows");
+            statements += event.getInt("statements");
+            sorted = false;
+        }
+
+        long p99Micros() {
+            return percentile(0.99);
+        }
+
+        long percentile(double percentile) {
+            if (!sorted) {
+                Arrays.sort(durationsMicros, 0, count);
+                sorted = true;
+            }
+            final int index = (int) Math.ceil(percentile * count) - 1;
+            return durationsMicros[Math.max(0, Math.min(index, count - 1))];
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * MemberRepositoryImpl, MemberJpaRepository 호출 하나 (JFR 이벤트)
+ * 같은 HTTP 요청의 MemberRequestEvent 와 requestId 로 묶인다.
+ */
+@Name(MemberQueryEvent.NAME)
+@Label("Member Repository Query")
+@Category({"Querydsl", "Member"})
+@Description("Member repository call with predicate shape, paging, rows and statement count")
+@StackTrace(false)
+public class MemberQueryEvent extends Event {
+
+    public static final String NAME = "study.querydsl.MemberQuery";
+
+    @Label("Method")
+    String method;
+
+    @Label("Predicate Shape")
+    String shape;
+
+    @Label("Offset")
+    long offset;
+
+    @Label("Page Size")
+    int pageSize;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Statements")
+    int statements;
+
+    @Label("Request Id")
+    long requestId;
+}
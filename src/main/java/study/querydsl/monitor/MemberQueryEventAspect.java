@@ -0,0 +1,80 @@
+package study.querydsl.monitor;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberLookupResult;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * MemberRepositoryImpl, MemberJpaRepository 호출마다 MemberQueryEvent 를 남긴다.
+ * JFR 기록 중이 아니면 이벤트 객체 생성과 isEnabled() 확인만 하고 넘어간다.
+ */
+@Aspect
+@Component
+public class MemberQueryEventAspect {
+
+    @Around("bean(memberRepositoryImpl) || bean(memberJpaRepository)")
+    public Object recordEvent(ProceedingJoinPoint joinPoint) throws Throwable {
+        final MemberQueryEvent event = new MemberQueryEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+
+        final int statementsBefore = StatementCounter.current();
+        Object result = null;
+        event.begin();
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+                event.shape = "";
+                for (Object arg : joinPoint.getArgs()) {
+                    if (arg instanceof MemberSearchCondition) {
+                        event.shape = ((MemberSearchCondition) arg).shape();
+                    } else if (arg instanceof Pageable && ((Pageable) arg).isPaged()) {
+                        event.offset = ((Pageable) arg).getOffset();
+                        event.pageSize = ((Pageable) arg).getPageSize();
+                    }
+                }
+                event.rows = rows(result);
+                event.statements = StatementCounter.current() - statementsBefore;
+                event.requestId = MemberRequestEventFilter.currentRequestId();
+                event.commit();
+            }
+        }
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Page) {
+            return ((Page<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Map) {
+            long rows = 0;
+            for (Object value : ((Map<?, ?>) result).values()) {
+                rows += value instanceof Collection ? ((Collection<?>) value).size() : 1;
+            }
+            return rows;
+        }
+        if (result instanceof MemberTeamColumns) {
+            return ((MemberTeamColumns) result).size();
+        }
+        if (result instanceof MemberLookupResult) {
+            return ((MemberLookupResult<?>) result).getFound().size();
+        }
+        return result != null ? 1 : 0;
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * HTTP 요청 하나 (JFR 이벤트), 요청 중에 생긴 MemberQueryEvent 가 같은 requestId 를 가진다.
+ */
+@Name("study.querydsl.MemberRequest")
+@Label("Member HTTP Request")
+@Category({"Querydsl", "Member"})
+@Description("HTTP request that issued member repository calls")
+@StackTrace(false)
+public class MemberRequestEvent extends Event {
+
+    @Label("Request Id")
+    long requestId;
+
+    @Label("Method")
+    String method;
+
+    @Label("URI")
+    String uri;
+
+    @Label("Status")
+    int status;
+}
@@ -0,0 +1,57 @@
+package study.querydsl.monitor;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JFR 기록 중일 때만 요청마다 requestId 를 붙이고 MemberRequestEvent 를 남긴다.
+ * 기록 중이 아니면 isEnabled() 확인 한 번으로 끝난다.
+ */
+@Component
+public class MemberRequestEventFilter extends OncePerRequestFilter {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 현재 스레드가 처리 중인 요청, 없으면 0
+     */
+    public static long currentRequestId() {
+        final Long requestId = CURRENT.get();
+        return requestId != null ? requestId : 0;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        final MemberRequestEvent event = new MemberRequestEvent();
+        if (!event.isEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        final long requestId = SEQUENCE.incrementAndGet();
+        CURRENT.set(requestId);
+        event.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            CURRENT.remove();
+            event.end();
+            if (event.shouldCommit()) {
+                event.requestId = requestId;
+                event.method = request.getMethod();
+                event.uri = request.getRequestURI();
+                event.status = response.getStatus();
+                event.commit();
+            }
+        }
+    }
+}
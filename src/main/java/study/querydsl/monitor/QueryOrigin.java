@@ -0,0 +1,32 @@
+package study.querydsl.monitor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 현재 스레드에서 실행 중인 리포지토리 메서드 (예: MemberRepositoryImpl.search)
+ * 리포지토리 안에서 다른 리포지토리를 부르면 가장 안쪽 메서드가 현재 값이 된다.
+ */
+public final class QueryOrigin {
+
+    private static final ThreadLocal<Deque<String>> ORIGINS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private QueryOrigin() {
+    }
+
+    public static void push(String origin) {
+        ORIGINS.get().push(origin);
+    }
+
+    public static void pop() {
+        final Deque<String> origins = ORIGINS.get();
+        origins.poll();
+        if (origins.isEmpty()) {
+            ORIGINS.remove();
+        }
+    }
+
+    public static String current() {
+        return ORIGINS.get().peek();
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.monitor;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * 회원 리포지토리 호출마다 QueryOrigin 을 기록한다.
+ */
+@Aspect
+@Component
+public class QueryOriginAspect {
+
+    @Around("bean(memberRepository) || bean(memberRepositoryImpl) || bean(memberJpaRepository) || bean(memberSqlRepository)")
+    public Object recordOrigin(ProceedingJoinPoint joinPoint) throws Throwable {
+        QueryOrigin.push(joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            QueryOrigin.pop();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.monitor;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate 가 만든 SQL 앞에 호출한 리포지토리 메서드명(예: MemberRepositoryImpl.searchPageComplex)을 블록 주석으로 붙인다.
+ * 로그나 H2 의 실행 중 쿼리 목록에서 SQL 이 어디서 나왔는지 바로 보인다.
+ */
+public class QueryOriginInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        final String origin = QueryOrigin.current();
+        if (origin == null) {
+            return sql;
+        }
+        return "/* " + origin + " */ " + sql;
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.monitor;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 느린 SQL 한 건, plan 은 EXPLAIN 이 끝나면 채워진다.
+ */
+@Getter
+public class SlowQuery {
+
+    private final Instant executedAt;
+    private final String origin;
+    private final String sql;
+    private final List<String> parameters;
+    private final long elapsedMillis;
+    private volatile String plan;
+
+    public SlowQuery(Instant executedAt, String origin, String sql, List<String> parameters, long elapsedMillis) {
+        this.executedAt = executedAt;
+        this.origin = origin;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+}
@@ -0,0 +1,183 @@
+package study.querydsl.monitor;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 실행 시간이 threshold 를 넘는 SQL 을 바인딩 파라미터와 함께 SlowQueryLog 에 남기는 DataSource
+ * 파라미터 값은 show-parameters 일 때만 남기고 기본은 타입만 남긴다. (EXPLAIN 에는 실제 값을 쓴다)
+ * select 는 별도 커넥션에서 EXPLAIN 을 비동기로 실행해서 실행 계획도 같이 남긴다.
+ * 빠른 SQL 은 System.nanoTime 두 번 외에 추가 비용이 없다.
+ */
+public class SlowQueryDataSource extends DelegatingDataSource {
+
+    private static final Pattern SELECT = Pattern.compile("^\\s*(?:/\\*.*?\\*/\\s*)*select\\b", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    private final SlowQueryLog slowQueryLog;
+    private final ThreadPoolExecutor explainExecutor;
+
+    public SlowQueryDataSource(DataSource targetDataSource, SlowQueryLog slowQueryLog) {
+        super(targetDataSource);
+        this.slowQueryLog = slowQueryLog;
+        // EXPLAIN 이 밀리면 버린다. 느린 쿼리가 몰릴 때 DB 에 부하를 더 얹지 않도록
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(16), runnable -> {
+            final Thread thread = new Thread(runnable, "slow-query-explain");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            final Object result = invoke(connection, method, args);
+            if (method.getName().equals("prepareStatement") && !(result instanceof CallableStatement)) {
+                return wrapPreparedStatement((PreparedStatement) result, (String) args[0]);
+            }
+            if (method.getName().equals("createStatement")) {
+                return wrapStatement((Statement) result);
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement wrapPreparedStatement(PreparedStatement statement, String sql) {
+        final Map<Integer, Object> parameters = new TreeMap<>();
+        return proxy(PreparedStatement.class, statement, (proxy, method, args) -> {
+            final String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            }
+
+            if (!name.startsWith("execute")) {
+                return invoke(statement, method, args);
+            }
+
+            final long start = System.nanoTime();
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                record(sql, parameters, System.nanoTime() - start);
+            }
+        });
+    }
+
+    private Statement wrapStatement(Statement statement) {
+        return proxy(Statement.class, statement, (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute") || args == null || !(args[0] instanceof String)) {
+                return invoke(statement, method, args);
+            }
+
+            final long start = System.nanoTime();
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                record((String) args[0], Map.of(), System.nanoTime() - start);
+            }
+        });
+    }
+
+    private void record(String sql, Map<Integer, Object> parameters, long elapsedNanos) {
+        StatementCounter.increment();
+        if (!slowQueryLog.isSlow(elapsedNanos)) {
+            return;
+        }
+
+        final Map<Integer, Object> bound = new TreeMap<>(parameters);
+        final List<String> values = new ArrayList<>(bound.size());
+        for (Object value : bound.values()) {
+            values.add(slowQueryLog.isShowParameters() ? truncate(String.valueOf(value)) : mask(value));
+        }
+
+        final SlowQuery slowQuery = new SlowQuery(Instant.now(), QueryOrigin.current(), sql, values,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        slowQueryLog.add(slowQuery);
+
+        if (SELECT.matcher(sql).find()) {
+            explainExecutor.execute(() -> slowQuery.setPlan(explain(sql, bound)));
+        }
+    }
+
+    private static String truncate(String text) {
+        return text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text;
+    }
+
+    private static String mask(Object value) {
+        return value == null ? "null" : "?(" + value.getClass().getSimpleName() + ")";
+    }
+
+    private String explain(String sql, Map<Integer, Object> parameters) {
+        try (Connection connection = obtainTargetDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                statement.setObject(parameter.getKey(), parameter.getValue());
+            }
+
+            final StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            return "EXPLAIN 실패: " + e.getMessage();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return target.toString();
+                default:
+                    return handler.invoke(proxy, method, args);
+            }
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
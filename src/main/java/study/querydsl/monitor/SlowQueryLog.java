@@ -0,0 +1,59 @@
+package study.querydsl.monitor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 느린 SQL 을 최근 capacity 건만 보관하는 ring buffer
+ * /actuator/slowqueries 로 나가므로 바인딩 파라미터 값은 기본으로 가리고 타입만 남긴다. (member.slow-query.show-parameters)
+ */
+@Component
+public class SlowQueryLog {
+
+    private final SlowQuery[] entries;
+    private final long thresholdNanos;
+    private final boolean showParameters;
+    private long next;
+
+    public SlowQueryLog(@Value("${member.slow-query.threshold:200ms}") Duration threshold,
+                        @Value("${member.slow-query.capacity:100}") int capacity,
+                        @Value("${member.slow-query.show-parameters:false}") boolean showParameters) {
+        this.entries = new SlowQuery[capacity];
+        this.thresholdNanos = threshold.toNanos();
+        this.showParameters = showParameters;
+    }
+
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    public boolean isShowParameters() {
+        return showParameters;
+    }
+
+    public synchronized void add(SlowQuery query) {
+        entries[(int) (next++ % entries.length)] = query;
+    }
+
+    /**
+     * 최신 순
+     */
+    public synchronized List<SlowQuery> entries() {
+        final int size = (int) Math.min(next, entries.length);
+        final List<SlowQuery> result = new ArrayList<>(size);
+        for (long i = next - 1; i >= next - size; i--) {
+            result.add(entries[(int) (i % entries.length)]);
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        next = 0;
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.monitor;
+
+/**
+ * 현재 스레드에서 실행한 JDBC 문장 수 (SlowQueryDataSource 가 실행할 때마다 센다)
+ * 구간의 문장 수는 전후 값의 차이로 구한다.
+ */
+public final class StatementCounter {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    private StatementCounter() {
+    }
+
+    static void increment() {
+        COUNT.get()[0]++;
+    }
+
+    public static int current() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,156 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.SimpleExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberLookupResult;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * id / username 여러 개로 회원을 한 번에 찾는다. (findById 를 키마다 반복하지 않도록)
+ * - 키가 적으면 IN 절을 chunk 로 나눠 실행한다. IN 절 길이를 2의 거듭제곱으로 맞춰서(마지막 키 반복) 쿼리 모양 수를 제한
+ *   -> Hibernate 쿼리 플랜 캐시 / DB 플랜 캐시가 키 개수마다 새로 쌓이지 않는다.
+ * - 키가 tempTableThreshold 이상이면 임시 테이블에 배열 한 번으로 넣고 조인한다. (키 수와 상관없이 SQL 몇 개로 끝난다)
+ */
+@Repository
+public class MemberBulkLookup {
+
+    private static final String CREATE_ID_TABLE =
+            "create local temporary table if not exists member_lookup_id (id bigint primary key) transactional";
+    private static final String CREATE_USERNAME_TABLE =
+            "create local temporary table if not exists member_lookup_username (username varchar(255) primary key) transactional";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final int inListSize;
+    private final int tempTableThreshold;
+
+    public MemberBulkLookup(JPAQueryFactory queryFactory,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${member.lookup.in-list-size:512}") int inListSize,
+                            @Value("${member.lookup.temp-table-threshold:5000}") int tempTableThreshold) {
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inListSize = Integer.highestOneBit(Math.max(8, inListSize));
+        this.tempTableThreshold = tempTableThreshold;
+    }
+
+    public MemberLookupResult<Long> findAllByIds(Collection<Long> ids) {
+        final List<Long> keys = new ArrayList<>(new LinkedHashSet<>(ids));
+        final List<Member> members = keys.size() >= tempTableThreshold
+                ? joinTempTable(CREATE_ID_TABLE,
+                "insert into member_lookup_id (id) select * from unnest(?)", "BIGINT",
+                "select m.* from member m join member_lookup_id k on m.member_id = k.id",
+                "delete from member_lookup_id", keys)
+                : inChunks(member.id, keys);
+        return inInputOrder(keys, members, Member::getId);
+    }
+
+    public MemberLookupResult<String> findAllByUsernames(Collection<String> usernames) {
+        final List<String> keys = new ArrayList<>(new LinkedHashSet<>(usernames));
+        final List<Member> members = keys.size() >= tempTableThreshold
+                ? joinTempTable(CREATE_USERNAME_TABLE,
+                "insert into member_lookup_username (username) select * from unnest(?)", "VARCHAR",
+                "select m.* from member m join member_lookup_username k on m.username = k.username",
+                "delete from member_lookup_username", keys)
+                : inChunks(member.username, keys);
+        return inInputOrder(keys, members, Member::getUsername);
+    }
+
+    private <K> List<Member> inChunks(SimpleExpression<K> path, List<K> keys) {
+        final List<Member> members = new ArrayList<>(keys.size());
+        for (int from = 0; from < keys.size(); from += inListSize) {
+            final List<K> chunk = padded(keys.subList(from, Math.min(keys.size(), from + inListSize)));
+            members.addAll(queryFactory.selectFrom(member)
+                    .where(path.in(chunk))
+                    .setHint(QueryHints.HINT_READONLY, true)
+                    .fetch());
+        }
+        return members;
+    }
+
+    /**
+     * IN 절 길이를 8, 16, 32 ... 중 하나로 맞춘다.
+     */
+    private <K> List<K> padded(List<K> chunk) {
+        final int size = Math.max(8, Integer.highestOneBit(chunk.size() - 1) << 1);
+        final List<K> padded = new ArrayList<>(size);
+        padded.addAll(chunk);
+        final K last = chunk.get(chunk.size() - 1);
+        while (padded.size() < size) {
+            padded.add(last);
+        }
+        return padded;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Member> joinTempTable(String createSql, String insertSql, String sqlType, String selectSql, String clearSql, List<?> keys) {
+        // 임시 테이블은 커넥션(세션) 단위이므로 채우기 ~ 조회 ~ 비우기를 한 트랜잭션(= 한 커넥션)에서
+        return transactionTemplate.execute(status -> {
+            final Session session = em.unwrap(Session.class);
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(createSql);
+                }
+                try (PreparedStatement insert = connection.prepareStatement(insertSql)) {
+                    final Array array = connection.createArrayOf(sqlType, keys.toArray());
+                    insert.setArray(1, array);
+                    insert.executeUpdate();
+                }
+            });
+
+            final List<Member> members = em.createNativeQuery(selectSql, Member.class)
+                    .setHint(QueryHints.HINT_READONLY, true)
+                    .getResultList();
+
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate(clearSql);
+                }
+            });
+            return members;
+        });
+    }
+
+    private <K> MemberLookupResult<K> inInputOrder(List<K> keys, List<Member> members, Function<Member, K> keyOf) {
+        final Map<K, List<Member>> byKey = new HashMap<>();
+        for (Member member : members) {
+            byKey.computeIfAbsent(keyOf.apply(member), key -> new ArrayList<>(1)).add(member);
+        }
+
+        final List<Member> found = new ArrayList<>(members.size());
+        final List<K> missing = new ArrayList<>();
+        for (K key : keys) {
+            final List<Member> matched = byKey.get(key);
+            if (matched == null) {
+                missing.add(key);
+            } else {
+                found.addAll(matched);
+            }
+        }
+        return new MemberLookupResult<>(found, missing);
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.repository;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Member/Team 데이터 버전
+ * 쓰기가 발생한 트랜잭션이 끝나면(커밋/롤백) 1 증가한다. 조건부 GET(ETag) 의 기준 값으로 사용
+ * 재기동 후 이전 ETag 와 겹치지 않도록 시작 값은 기동 시각으로 잡는다.
+ */
+@Component
+public class MemberDataVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * 트랜잭션 안이면 완료 시점에 한 번만 증가, 트랜잭션 밖이면 바로 증가
+     * -> 커밋 전에 올리면 커밋 전 데이터를 새 버전으로 캐시하는 클라이언트가 생길 수 있다.
+     */
+    public void markWritten() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            version.incrementAndGet();
+            return;
+        }
+
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(MemberDataVersion.this);
+                version.incrementAndGet();
+            }
+        });
+    }
+}
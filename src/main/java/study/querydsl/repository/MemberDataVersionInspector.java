@@ -0,0 +1,30 @@
+package study.querydsl.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.regex.Pattern;
+
+/**
+ * Hibernate 가 실행하는 모든 SQL 을 검사해서 member/team 쓰기가 있으면 데이터 버전을 올린다.
+ * 엔티티 persist/merge/remove 뿐 아니라 Querydsl 벌크 update/delete 도 SQL 로 나가기 때문에 같이 잡힌다.
+ */
+public class MemberDataVersionInspector implements StatementInspector {
+
+    private static final Pattern WRITE_STATEMENT = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(?:insert\\s+into|update|delete\\s+from)\\s+(?:member|team)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final MemberDataVersion dataVersion;
+
+    public MemberDataVersionInspector(MemberDataVersion dataVersion) {
+        this.dataVersion = dataVersion;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (WRITE_STATEMENT.matcher(sql).find()) {
+            dataVersion.markWritten();
+        }
+        return sql;
+    }
+}
@@ -3,6 +3,7 @@ package study.querydsl.repository;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
@@ -40,22 +41,35 @@ public class MemberJpaRepository {
         return Optional.ofNullable(member); // null 일 경우 어떤 값이 출력되는지 확인해보기
     }
 
+    /**
+     * 조회용 메서드는 read-only 로 로딩한다.
+     * -> 변경 감지용 스냅샷을 만들지 않아서 엔티티당 메모리가 절반 가까이 줄고 flush 때 비교 대상에서도 빠진다.
+     * (readOnly 트랜잭션이면 스프링이 세션 전체를 read-only 로 바꾸기 때문에 힌트 없이도 같은 효과)
+     */
     public List<Member> findAll() {
-        return em.createQuery("select m from Member m", Member.class).getResultList();
+        return em.createQuery("select m from Member m", Member.class)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultList();
     }
 
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
+                .setHint(QueryHints.HINT_READONLY, true)
                 .getResultList();
     }
 
     public List<Member> findAll_Querydsl() {
-        return queryFactory.selectFrom(member).fetch();
+        return queryFactory.selectFrom(member)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .fetch();
     }
 
     public List<Member> findByUsername_Querydsl(String username) {
-        return queryFactory.selectFrom(member).where(member.username.eq(username)).fetch();
+        return queryFactory.selectFrom(member)
+                .where(member.username.eq(username))
+                .setHint(QueryHints.HINT_READONLY, true)
+                .fetch();
     }
 
     /**
@@ -66,7 +80,7 @@ public class MemberJpaRepository {
         final BooleanBuilder booleanBuilder = new BooleanBuilder();
 
         if (hasText(condition.getUsername())) {
-            booleanBuilder.and(member.username.eq(condition.getUsername()));
+            booleanBuilder.and(eqUserName(condition.getUsername(), condition.isIgnoreCase()));
         }
 
         if (hasText(condition.getTeamName())) {
@@ -104,14 +118,17 @@ public class MemberJpaRepository {
                 team.id.as("teamId"),
                 team.name.as("teamName")))
                 .from(member).leftJoin(member.team, team)
-                .where(eqUserName(condition.getUsername()),
+                .where(eqUserName(condition.getUsername(), condition.isIgnoreCase()),
                         eqTeamName(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())).fetch();
     }
 
-    private BooleanExpression eqUserName(String username) {
-        return username != null ? member.username.eq(username) : null;
+    private BooleanExpression eqUserName(String username, boolean ignoreCase) {
+        if (username == null) {
+            return null;
+        }
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
     }
 
     private BooleanExpression eqTeamName(String teamName) {
@@ -0,0 +1,275 @@
+package study.querydsl.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 페이지 조회(/v2, /v3) 후 같은 조건의 다음 페이지를 미리 읽어 잠깐 캐시한다. (대부분 N 페이지 다음에 N+1 페이지를 부른다)
+ * - 키에 데이터 버전(MemberDataVersion)이 들어가므로 쓰기가 있으면 이전 캐시는 쓰이지 않고 ttl 뒤에 지워진다.
+ * - 낮은 우선순위 스레드 + 크기 제한 큐, 큐가 차거나 커넥션을 기다리는 스레드가 있으면 미리 읽기를 건너뛴다.
+ * - 조건 모양(MemberSearchCondition.shape)별 적중률이 min-hit-rate 보다 낮으면 그 모양은 retry-after 동안 미리 읽지 않는다.
+ * - 요청이 왔을 때 아직 읽는 중이면 in-flight-wait 만큼 기다리고, 그래도 안 끝나면 직접 읽는다.
+ */
+@Slf4j
+@Component
+public class MemberPagePrefetcher implements InfoContributor, DisposableBean {
+
+    private final MemberDataVersion dataVersion;
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration inFlightWait;
+    private final int maxEntries;
+    private final int minSamples;
+    private final double minHitRate;
+    private final Duration retryAfter;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+
+    public MemberPagePrefetcher(MemberDataVersion dataVersion,
+                                DataSource dataSource,
+                                @Value("${member.prefetch.enabled:false}") boolean enabled,
+                                @Value("${member.prefetch.threads:2}") int threads,
+                                @Value("${member.prefetch.queue-capacity:32}") int queueCapacity,
+                                @Value("${member.prefetch.ttl:30s}") Duration ttl,
+                                @Value("${member.prefetch.in-flight-wait:100ms}") Duration inFlightWait,
+                                @Value("${member.prefetch.max-entries:1000}") int maxEntries,
+                                @Value("${member.prefetch.min-samples:50}") int minSamples,
+                                @Value("${member.prefetch.min-hit-rate:0.3}") double minHitRate,
+                                @Value("${member.prefetch.retry-after:10m}") Duration retryAfter) {
+        this.dataVersion = dataVersion;
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.inFlightWait = inFlightWait;
+        this.maxEntries = maxEntries;
+        this.minSamples = minSamples;
+        this.minHitRate = minHitRate;
+        this.retryAfter = retryAfter;
+        // 큐가 차면 버린다(RejectedExecutionException). 미리 읽기는 요청 처리보다 항상 뒤
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            final Thread thread = new Thread(runnable, "member-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * 미리 읽어 둔 페이지가 있으면 그것을, 없으면 loader 로 읽는다. 그 다음 페이지를 미리 읽는다.
+     * @param endpoint 같은 조건이라도 엔드포인트마다 조회 방식이 다르므로 키에 포함 (v2, v3)
+     */
+    public Page<MemberTeamDto> page(String endpoint, MemberSearchCondition condition, Pageable pageable,
+                                    Function<Pageable, Page<MemberTeamDto>> loader) {
+        if (!enabled) {
+            return loader.apply(pageable);
+        }
+
+        final ShapeStats stats = shapes.computeIfAbsent(condition.shape(), shape -> new ShapeStats());
+        final long version = dataVersion.current();
+        final Page<MemberTeamDto> page = cached(new Key(endpoint, condition, pageable, version), stats);
+        final Page<MemberTeamDto> result = page != null ? page : loader.apply(pageable);
+
+        if (result.hasNext() && stats.allowed(minSamples, minHitRate, retryAfter)) {
+            prefetch(new Key(endpoint, condition, pageable.next(), version), stats, loader);
+        }
+        return result;
+    }
+
+    private Page<MemberTeamDto> cached(Key key, ShapeStats stats) {
+        final Entry entry = cache.remove(key);
+        if (entry == null || entry.expired()) {
+            return null;
+        }
+        try {
+            final Page<MemberTeamDto> page = entry.page.get(inFlightWait.toNanos(), TimeUnit.NANOSECONDS);
+            stats.hits.increment();
+            return page;
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void prefetch(Key key, ShapeStats stats, Function<Pageable, Page<MemberTeamDto>> loader) {
+        if (cache.containsKey(key) || busy()) {
+            return;
+        }
+        if (cache.size() >= maxEntries) {
+            cache.values().removeIf(Entry::expired);
+            if (cache.size() >= maxEntries) {
+                return;
+            }
+        }
+
+        final CompletableFuture<Page<MemberTeamDto>> page = new CompletableFuture<>();
+        if (cache.putIfAbsent(key, new Entry(page, System.nanoTime() + ttl.toNanos())) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    final Page<MemberTeamDto> loaded = loader.apply(key.pageable());
+                    stats.prefetched.increment();
+                    page.complete(loaded);
+                } catch (RuntimeException e) {
+                    log.debug("다음 페이지 미리 읽기 실패: {}", key, e);
+                    cache.remove(key);
+                    page.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * 커넥션 풀에서 커넥션을 기다리는 요청이 있으면 미리 읽기가 커넥션을 더 가져가지 않도록
+     */
+    private boolean busy() {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            return true;
+        }
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                final HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                return pool != null && pool.getThreadsAwaitingConnection() > 0;
+            }
+        } catch (SQLException e) {
+            log.debug("커넥션 풀 상태를 읽을 수 없습니다", e);
+        }
+        return false;
+    }
+
+    /**
+     * 지금 캐시에 있는 미리 읽기가 모두 끝나면 완료 (테스트용)
+     */
+    CompletableFuture<Void> inFlight() {
+        return CompletableFuture.allOf(cache.values().stream()
+                .map(entry -> entry.page.handle((page, e) -> null))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        if (!enabled) {
+            return;
+        }
+        final Map<String, Object> report = new LinkedHashMap<>();
+        shapes.forEach((shape, stats) -> report.put(shape, Map.of(
+                "prefetched", stats.prefetched.sum(),
+                "hits", stats.hits.sum(),
+                "disabled", !stats.allowed(minSamples, minHitRate, retryAfter))));
+        builder.withDetail("prefetch", report);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @EqualsAndHashCode
+    @ToString
+    private static class Key {
+
+        private final String endpoint;
+        private final MemberSearchCondition condition;
+        private final int page;
+        private final int size;
+        private final Sort sort;
+        private final long version;
+
+        Key(String endpoint, MemberSearchCondition condition, Pageable pageable, long version) {
+            this.endpoint = endpoint;
+            this.condition = condition;
+            this.page = pageable.getPageNumber();
+            this.size = pageable.getPageSize();
+            this.sort = pageable.getSort();
+            this.version = version;
+        }
+
+        Pageable pageable() {
+            return PageRequest.of(page, size, sort);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+
+        private final CompletableFuture<Page<MemberTeamDto>> page;
+        private final long expiresAt;
+
+        boolean expired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+
+    /**
+     * 조건 모양별 적중률, min-samples 개를 미리 읽은 뒤에 판단한다.
+     * 꺼진 모양은 retry-after 가 지나면 통계를 비우고 다시 미리 읽는다.
+     */
+    private static class ShapeStats {
+
+        private final LongAdder prefetched = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private volatile long disabledUntil;
+
+        boolean allowed(int minSamples, double minHitRate, Duration retryAfter) {
+            final long now = System.currentTimeMillis();
+            if (disabledUntil != 0) {
+                if (now < disabledUntil) {
+                    return false;
+                }
+                synchronized (this) {
+                    if (disabledUntil != 0 && now >= disabledUntil) {
+                        prefetched.reset();
+                        hits.reset();
+                        disabledUntil = 0;
+                    }
+                }
+                return true;
+            }
+            final long samples = prefetched.sum();
+            if (samples >= minSamples && (double) hits.sum() / samples < minHitRate) {
+                disabledUntil = now + retryAfter.toMillis();
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member 전체 스캔(캐시 재구성, export 등)
+ * member_id 범위를 partitions 개로 나누고, 파티션마다 별도 EntityManager(= 별도 커넥션)에서 동시에 읽는다.
+ * DTO 로 조회하고 파티션 안에서도 id 기준 chunk 로 끊어 읽기 때문에 영속성 컨텍스트에 아무것도 쌓이지 않는다.
+ * consumer 는 여러 스레드에서 동시에 호출되므로 thread-safe 해야 한다.
+ */
+@Component
+public class MemberPartitionScanner {
+
+    private final EntityManagerFactory emf;
+    private final int maxParallelism;
+    private final int chunkSize;
+
+    public MemberPartitionScanner(EntityManagerFactory emf,
+                                  @Value("${member.scan.max-parallelism:4}") int maxParallelism,
+                                  @Value("${member.scan.chunk-size:1000}") int chunkSize) {
+        this.emf = emf;
+        this.maxParallelism = maxParallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return 읽은 row 수
+     */
+    public long scan(int partitions, Consumer<MemberTeamDto> consumer) {
+        final List<long[]> ranges = split(partitions);
+        if (ranges.isEmpty()) {
+            return 0;
+        }
+
+        // 커넥션 풀을 다 점유하지 않도록 동시 실행 수는 max-parallelism 으로 제한
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(ranges.size(), maxParallelism));
+        try {
+            final List<Future<Long>> futures = new ArrayList<>(ranges.size());
+            for (long[] range : ranges) {
+                futures.add(executor.submit(() -> scanRange(range[0], range[1], consumer)));
+            }
+
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<long[]> split(int partitions) {
+        final EntityManager em = emf.createEntityManager();
+        final Tuple bounds;
+        try {
+            bounds = new JPAQueryFactory(em)
+                    .select(member.id.min(), member.id.max())
+                    .from(member)
+                    .fetchOne();
+        } finally {
+            em.close();
+        }
+        return bounds == null ? new ArrayList<>() : split(bounds.get(0, Long.class), bounds.get(1, Long.class), partitions);
+    }
+
+    /**
+     * [min, max] 를 균등한 폭의 [from, to] 구간으로 나눈다. 마지막 구간은 더 좁을 수 있다, 테이블이 비어 있으면(min == null) 빈 목록
+     */
+    static List<long[]> split(Long min, Long max, int partitions) {
+        final List<long[]> ranges = new ArrayList<>();
+        if (min == null) {
+            return ranges;
+        }
+
+        final int count = Math.max(1, partitions);
+        final long width = Math.max(1, (max - min + count) / count);
+
+        for (long from = min; from <= max; from += width) {
+            ranges.add(new long[]{from, Math.min(max, from + width - 1)});
+        }
+        return ranges;
+    }
+
+    private long scanRange(long from, long to, Consumer<MemberTeamDto> consumer) {
+        final EntityManager em = emf.createEntityManager();
+        try {
+            final Session session = em.unwrap(Session.class);
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+
+            em.getTransaction().begin();
+            session.doWork(connection -> connection.setReadOnly(true));
+
+            final JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            long count = 0;
+            long cursor = from;
+
+            while (cursor <= to) {
+                final List<MemberTeamDto> rows = queryFactory
+                        .select(new QMemberTeamDto(
+                                member.id.as("memberId"),
+                                member.username,
+                                member.age,
+                                team.id.as("teamId"),
+                                team.name.as("teamName")))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(member.id.goe(cursor), member.id.loe(to))
+                        .orderBy(member.id.asc())
+                        .limit(chunkSize)
+                        .fetch();
+
+                rows.forEach(consumer);
+                count += rows.size();
+
+                if (rows.size() < chunkSize) {
+                    break;
+                }
+                cursor = rows.get(rows.size() - 1).getMemberId() + 1;
+            }
+
+            em.getTransaction().rollback();
+            return count;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+}
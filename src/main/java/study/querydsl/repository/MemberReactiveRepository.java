@@ -0,0 +1,74 @@
+package study.querydsl.repository;
+
+import com.querydsl.sql.SQLBindings;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.List;
+
+/**
+ * R2DBC 로 실행하는 스트리밍 검색
+ * SQL 은 MemberSqlRepository 와 같은 querydsl-sql 쿼리를 문자열로 렌더링해서 쓰고, 실행만 R2DBC 커넥션 풀에서 한다.
+ * ConnectionFactory 를 빈으로 등록하면 DataSource 자동 설정이 꺼지기 때문에 이 클래스 안에서만 만든다.
+ * 주의: r2dbc-h2 는 내부에서 H2 엔진을 블로킹 호출(JDBC 와 같은 코드)로 부른다. 쿼리 실행과 row fetch 동안 호출한 스레드가 막히므로
+ * 진짜 논블로킹 I/O 는 아니다. 그래서 구독/요청을 boundedElastic 스레드로 옮겨서 서블릿/이벤트 루프 스레드가 막히지 않게 한다.
+ * (논블로킹 드라이버가 있는 DB 로 바꾸면 subscribeOn 은 빼도 된다)
+ */
+@Repository
+public class MemberReactiveRepository implements DisposableBean {
+
+    private final MemberSqlRepository sqlRepository;
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient databaseClient;
+
+    public MemberReactiveRepository(MemberSqlRepository sqlRepository,
+                                    @Value("${member.reactive.url:r2dbc:pool:h2:tcp://localhost/~/querydsl}") String url,
+                                    @Value("${spring.datasource.username:sa}") String username,
+                                    @Value("${spring.datasource.password:}") String password) {
+        this.sqlRepository = sqlRepository;
+        this.connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+    }
+
+    /**
+     * 구독자가 요청한 만큼만 row 를 읽어서 흘려보낸다.
+     */
+    public Flux<MemberTeamDto> search(MemberSearchCondition condition) {
+        final SQLBindings sql = sqlRepository.selectMemberTeam(condition).getSQL();
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.getSQL());
+        final List<Object> bindings = sql.getNullFriendlyBindings();
+        for (int i = 0; i < bindings.size(); i++) {
+            spec = spec.bind(i, bindings.get(i));
+        }
+
+        return spec.map((row, metadata) -> new MemberTeamDto(
+                        row.get(0, Long.class),
+                        row.get(1, String.class),
+                        row.get(2, Integer.class),
+                        row.get(3, Long.class),
+                        row.get(4, String.class)))
+                .all()
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionFactory instanceof Disposable) {
+            ((Disposable) connectionFactory).dispose();
+        }
+    }
+}
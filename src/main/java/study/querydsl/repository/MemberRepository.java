@@ -1,11 +1,16 @@
 package study.querydsl.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import study.querydsl.entity.Member;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom {
 
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
     List<Member> findByUsername(String username);
 }
@@ -2,11 +2,16 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberLookupResult;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface MemberRepositoryCustom {
 
@@ -16,5 +21,21 @@ public interface MemberRepositoryCustom {
 
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
 
+    Page<MemberTeamDto> searchPageWindowCount(MemberSearchCondition condition, Pageable pageable);
+
     List<MemberDto> searchWithOrderSpecifier(MemberSearchCondition condition, Pageable pageable);
+
+    List<MemberTeamDto> searchTopK(MemberSearchCondition condition, Sort sort, int k);
+
+    Map<Long, List<MemberTeamDto>> searchTopKPerTeam(MemberSearchCondition condition, Sort sort, int k);
+
+    MemberTeamColumns searchColumns(MemberSearchCondition condition);
+
+    long changeTeam(Long memberId, Long teamId);
+
+    long changeTeam(Collection<Long> memberIds, Long teamId);
+
+    MemberLookupResult<Long> findAllByIds(Collection<Long> ids);
+
+    MemberLookupResult<String> findAllByUsernames(Collection<String> usernames);
 }
\ No newline at end of file
@@ -8,6 +8,8 @@ import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -17,23 +19,73 @@ import study.querydsl.dto.*;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.shard.ShardedMemberRepository;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QMemberTeamRead.memberTeamRead;
 import static study.querydsl.entity.QTeam.team;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
     private final JPAQueryFactory queryFactory;
+    private final MemberSqlRepository sqlRepository;
+    private final MemberBulkLookup bulkLookup;
+    private final MemberTeamReassignment teamReassignment;
 
-    public MemberRepositoryImpl(JPAQueryFactory queryFactory) {
+    /**
+     * member.sharding.enabled 면 search, searchPageSimple, searchPageComplex 를 샤드에 scatter-gather (샤드를 원본에서 채운 뒤부터)
+     */
+    private final ShardedMemberRepository shardedRepository;
+
+    /**
+     * querydsl-sql(MemberSqlRepository)로 실행할 메서드 이름 (search, searchPageSimple, searchPageComplex)
+     */
+    private final Set<String> sqlFastPathMethods;
+
+    /**
+     * search, searchPageComplex 를 조인 없이 member_team(MemberTeamRead)에서 조회 (stale 인 동안은 조인 쿼리)
+     */
+    private final boolean readModelEnabled;
+    private final MemberTeamReadModelTracker readModelTracker;
+
+    public MemberRepositoryImpl(JPAQueryFactory queryFactory,
+                                MemberSqlRepository sqlRepository,
+                                MemberBulkLookup bulkLookup,
+                                MemberTeamReassignment teamReassignment,
+                                ObjectProvider<ShardedMemberRepository> shardedRepository,
+                                MemberTeamReadModelTracker readModelTracker,
+                                @Value("${member.sql-fast-path.methods:}") String[] sqlFastPathMethods,
+                                @Value("${member.read-model.enabled:false}") boolean readModelEnabled) {
         this.queryFactory = queryFactory;
+        this.sqlRepository = sqlRepository;
+        this.bulkLookup = bulkLookup;
+        this.teamReassignment = teamReassignment;
+        this.shardedRepository = shardedRepository.getIfAvailable();
+        this.sqlFastPathMethods = new HashSet<>(Arrays.asList(sqlFastPathMethods));
+        this.readModelEnabled = readModelEnabled;
+        this.readModelTracker = readModelTracker;
     }
 
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        if (shardedRepository != null && shardedRepository.isSeeded()) {
+            return shardedRepository.search(condition);
+        }
+        if (sqlFastPathMethods.contains("search")) {
+            return sqlRepository.search(condition);
+        }
+        if (readModelEnabled && !readModelTracker.isStale()) {
+            return selectFromReadModel(condition).fetch();
+        }
+
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -43,14 +95,17 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         team.name.as("teamName")
                 )).from(member)
                 .leftJoin(member.team, team)
-                .where(eqUsername(condition.getUsername()),
+                .where(eqUsername(condition.getUsername(), condition.isIgnoreCase()),
                         eqTeamName(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())).fetch();
     }
 
-    private BooleanExpression eqUsername(String username) {
-        return username != null ? member.username.eq(username) : null;
+    private BooleanExpression eqUsername(String username, boolean ignoreCase) {
+        if (username == null) {
+            return null;
+        }
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
     }
 
     private BooleanExpression eqTeamName(String teamName) {
@@ -70,6 +125,13 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
      */
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        if (shardedRepository != null && shardedRepository.isSeeded()) {
+            return shardedRepository.searchPageSimple(condition, pageable);
+        }
+        if (sqlFastPathMethods.contains("searchPageSimple")) {
+            return sqlRepository.searchPageSimple(condition, pageable);
+        }
+
         final QueryResults<MemberTeamDto> results = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -79,7 +141,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         team.name.as("teamName")))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(eqUsername(condition.getUsername()),
+                .where(eqUsername(condition.getUsername(), condition.isIgnoreCase()),
                         eqTeamName(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
@@ -99,6 +161,15 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
      */
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        if (shardedRepository != null && shardedRepository.isSeeded()) {
+            return shardedRepository.searchPageComplex(condition, pageable);
+        }
+        if (sqlFastPathMethods.contains("searchPageComplex")) {
+            return sqlRepository.searchPageComplex(condition, pageable);
+        }
+        if (readModelEnabled && !readModelTracker.isStale()) {
+            return searchPageFromReadModel(condition, pageable);
+        }
 
         // 순수 데이터 조회
         final List<MemberTeamDto> content = queryFactory
@@ -110,7 +181,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         team.name.as("teamName")))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(eqUsername(condition.getUsername()),
+                .where(eqUsername(condition.getUsername(), condition.isIgnoreCase()),
                         eqTeamName(condition.getTeamName()),
                         ageLoe(condition.getAgeLoe()),
                         ageGoe(condition.getAgeGoe()))
@@ -123,7 +194,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .select(member)
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(eqUsername(condition.getUsername()),
+                .where(eqUsername(condition.getUsername(), condition.isIgnoreCase()),
                         eqTeamName(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()));
@@ -131,6 +202,53 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
         return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
     }
 
+    /**
+     * 데이터와 전체 카운트를 SQL 한 번으로 (count(*) over(), querydsl-sql)
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageWindowCount(MemberSearchCondition condition, Pageable pageable) {
+        return sqlRepository.searchPageWindowCount(condition, pageable);
+    }
+
+    /**
+     * 비정규화 테이블 조회, team 조인이 없다.
+     */
+    private Page<MemberTeamDto> searchPageFromReadModel(MemberSearchCondition condition, Pageable pageable) {
+        final List<MemberTeamDto> content = selectFromReadModel(condition)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        final JPAQuery<Long> countQuery = queryFactory
+                .select(memberTeamRead.count())
+                .from(memberTeamRead)
+                .where(readModelPredicates(condition));
+
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    private JPAQuery<MemberTeamDto> selectFromReadModel(MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        memberTeamRead.memberId,
+                        memberTeamRead.username,
+                        memberTeamRead.age,
+                        memberTeamRead.teamId,
+                        memberTeamRead.teamName))
+                .from(memberTeamRead)
+                .where(readModelPredicates(condition));
+    }
+
+    private BooleanExpression[] readModelPredicates(MemberSearchCondition condition) {
+        return new BooleanExpression[]{
+                condition.getUsername() == null ? null : condition.isIgnoreCase()
+                        ? memberTeamRead.usernameLower.eq(Member.normalizeUsername(condition.getUsername()))
+                        : memberTeamRead.username.eq(condition.getUsername()),
+                condition.getTeamName() != null ? memberTeamRead.teamName.eq(condition.getTeamName()) : null,
+                condition.getAgeGoe() != null ? memberTeamRead.age.goe(condition.getAgeGoe()) : null,
+                condition.getAgeLoe() != null ? memberTeamRead.age.loe(condition.getAgeLoe()) : null};
+    }
+
     /**
      * 내부 로직 다시 확인해보기
      * -> 조건이 복잡해질 경우, Pageable 의 Sort 기능을 사용하기 어렵다. 스프링 데이터 페이징이 제공하는 sort 를 사용하기 보다는
@@ -153,4 +271,46 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
         return query.fetch();
     }
+
+    /**
+     * searchWithOrderSpecifier 와 달리 team 속성으로도 정렬할 수 있고, offset 페이지 대신 상위 k 개만 가져온다.
+     * 윈도우 함수가 필요해서 querydsl-sql(MemberSqlRepository)로 실행한다.
+     */
+    @Override
+    public List<MemberTeamDto> searchTopK(MemberSearchCondition condition, Sort sort, int k) {
+        return sqlRepository.searchTopK(condition, sort, k);
+    }
+
+    @Override
+    public Map<Long, List<MemberTeamDto>> searchTopKPerTeam(MemberSearchCondition condition, Sort sort, int k) {
+        return sqlRepository.searchTopKPerTeam(condition, sort, k);
+    }
+
+    /**
+     * 결과가 아주 클 때 (분석용), row 마다 MemberTeamDto 를 만들지 않고 컬럼 배열에 담는다.
+     */
+    @Override
+    public MemberTeamColumns searchColumns(MemberSearchCondition condition) {
+        return sqlRepository.searchColumns(condition);
+    }
+
+    @Override
+    public long changeTeam(Long memberId, Long teamId) {
+        return teamReassignment.changeTeam(memberId, teamId);
+    }
+
+    @Override
+    public long changeTeam(Collection<Long> memberIds, Long teamId) {
+        return teamReassignment.changeTeam(memberIds, teamId);
+    }
+
+    @Override
+    public MemberLookupResult<Long> findAllByIds(Collection<Long> ids) {
+        return bulkLookup.findAllByIds(ids);
+    }
+
+    @Override
+    public MemberLookupResult<String> findAllByUsernames(Collection<String> usernames) {
+        return bulkLookup.findAllByUsernames(usernames);
+    }
 }
@@ -0,0 +1,295 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.WindowFunction;
+import com.querydsl.sql.SQLQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.sql.MemberTeamSort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.sql.SMember.member;
+import static study.querydsl.sql.STeam.team;
+
+/**
+ * querydsl-sql 로 구현한 검색 (Hibernate 를 거치지 않고 row 를 바로 MemberTeamDto 로 매핑)
+ * MemberRepositoryImpl 에서 member.sql-fast-path.methods 설정에 따라 메서드 단위로 위임한다.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class MemberSqlRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final SQLQueryFactory sqlQueryFactory;
+
+    /**
+     * false 면 팀별 top-K 를 윈도우 함수 대신 스트리밍 + 크기 제한 힙(MemberTopK)으로 고른다.
+     */
+    private final boolean topKWindowFunction;
+
+    public MemberSqlRepository(SQLQueryFactory sqlQueryFactory,
+                               @Value("${member.top-k.window-function:true}") boolean topKWindowFunction) {
+        this.sqlQueryFactory = sqlQueryFactory;
+        this.topKWindowFunction = topKWindowFunction;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        flushPendingWrites();
+        return selectMemberTeam(condition).fetch();
+    }
+
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        flushPendingWrites();
+        final QueryResults<MemberTeamDto> results = selectMemberTeam(condition)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetchResults();
+
+        return new PageImpl<>(results.getResults(), pageable, results.getTotal());
+    }
+
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        flushPendingWrites();
+        final List<MemberTeamDto> content = selectMemberTeam(condition)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        final SQLQuery<Long> countQuery = sqlQueryFactory
+                .select(member.memberId)
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.teamId))
+                .where(searchPredicates(condition));
+
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+    }
+
+    /**
+     * 한 번의 SQL 로 페이지 데이터와 전체 개수를 같이 가져온다. (count(*) over())
+     * 결과가 비어 있으면 개수를 알 수 없으므로, offset 이 0 이 아닐 때만 카운트 쿼리를 따로 실행한다.
+     */
+    public Page<MemberTeamDto> searchPageWindowCount(MemberSearchCondition condition, Pageable pageable) {
+        flushPendingWrites();
+        final WindowFunction<Long> totalCount = SQLExpressions.count().over();
+
+        final List<Tuple> rows = sqlQueryFactory
+                .select(member.memberId, member.username, member.age, team.teamId, team.name, totalCount)
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.teamId))
+                .where(searchPredicates(condition))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        if (rows.isEmpty()) {
+            final long total = pageable.getOffset() == 0 ? 0 : sqlQueryFactory
+                    .select(member.memberId)
+                    .from(member)
+                    .leftJoin(team).on(member.teamId.eq(team.teamId))
+                    .where(searchPredicates(condition))
+                    .fetchCount();
+            return new PageImpl<>(new ArrayList<>(), pageable, total);
+        }
+
+        final List<MemberTeamDto> content = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            content.add(new MemberTeamDto(
+                    row.get(member.memberId),
+                    row.get(member.username),
+                    row.get(member.age),
+                    row.get(team.teamId),
+                    row.get(team.name)));
+        }
+        return new PageImpl<>(content, pageable, rows.get(0).get(totalCount));
+    }
+
+    /**
+     * 정렬 기준 상위 k 명, 정렬은 member/team 속성 모두 가능 (MemberTeamSort)
+     * order by ... limit k 로 DB 가 상위 k 개만 돌려준다.
+     */
+    public List<MemberTeamDto> searchTopK(MemberSearchCondition condition, Sort sort, int k) {
+        checkK(k);
+        flushPendingWrites();
+        return selectMemberTeam(condition)
+                .orderBy(MemberTeamSort.orderSpecifiers(sort))
+                .limit(k)
+                .fetch();
+    }
+
+    /**
+     * 팀별 상위 k 명 (예: 팀마다 나이 많은 순 100명), 팀이 없는 회원은 null 키로 묶는다.
+     * row_number() over (partition by team_id order by ...) <= k 로 DB 에서 잘라서 팀별로 k 개만 가져온다.
+     */
+    public Map<Long, List<MemberTeamDto>> searchTopKPerTeam(MemberSearchCondition condition, Sort sort, int k) {
+        return searchTopKPerTeam(condition, sort, k, topKWindowFunction);
+    }
+
+    /**
+     * windowFunction 을 직접 고른다. (두 방식의 결과 비교용)
+     */
+    Map<Long, List<MemberTeamDto>> searchTopKPerTeam(MemberSearchCondition condition, Sort sort, int k, boolean windowFunction) {
+        checkK(k);
+        flushPendingWrites();
+        if (!windowFunction) {
+            return searchTopKPerTeamWithHeap(condition, sort, k);
+        }
+
+        final PathBuilder<Tuple> ranked = new PathBuilder<>(Tuple.class, "ranked");
+        final SQLQuery<Tuple> rankedQuery = sqlQueryFactory
+                .select(member.memberId, member.username, member.age, team.teamId, team.name,
+                        SQLExpressions.rowNumber().over()
+                                .partitionBy(member.teamId)
+                                .orderBy(MemberTeamSort.orderSpecifiers(sort))
+                                .as("rnk"))
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.teamId))
+                .where(searchPredicates(condition));
+
+        final List<MemberTeamDto> rows = sqlQueryFactory
+                .select(new QMemberTeamDto(
+                        ranked.getNumber("member_id", Long.class),
+                        ranked.getString("username"),
+                        ranked.getNumber("age", Integer.class),
+                        ranked.getNumber("team_id", Long.class),
+                        ranked.getString("name")))
+                .from(rankedQuery, ranked)
+                .where(ranked.getNumber("rnk", Long.class).loe((long) k))
+                .orderBy(ranked.getNumber("team_id", Long.class).asc().nullsFirst(), ranked.getNumber("rnk", Long.class).asc())
+                .fetch();
+
+        final Map<Long, List<MemberTeamDto>> result = new LinkedHashMap<>();
+        for (MemberTeamDto row : rows) {
+            result.computeIfAbsent(row.getTeamId(), teamId -> new ArrayList<>(Math.min(k, 1_024))).add(row);
+        }
+        return result;
+    }
+
+    /**
+     * 윈도우 함수 없이, 정렬하지 않은 결과를 커서로 읽으면서 팀별 힙에 k 개까지만 남긴다.
+     */
+    private Map<Long, List<MemberTeamDto>> searchTopKPerTeamWithHeap(MemberSearchCondition condition, Sort sort, int k) {
+        final MemberTopK topK = new MemberTopK(MemberTeamSort.comparator(sort), k);
+        try (CloseableIterator<MemberTeamDto> rows = selectMemberTeam(condition).iterate()) {
+            while (rows.hasNext()) {
+                topK.add(rows.next());
+            }
+        }
+        return topK.result();
+    }
+
+    /**
+     * search 와 같은 조건, MemberTeamDto 대신 컬럼 배열(MemberTeamColumns)에 담는다. (수십만~백만 row 분석용)
+     * ResultSet 을 직접 읽어서 row 객체(Tuple, MemberTeamDto)를 만들지 않는다.
+     */
+    public MemberTeamColumns searchColumns(MemberSearchCondition condition) {
+        flushPendingWrites();
+        final SQLQuery<Tuple> query = sqlQueryFactory
+                .select(member.memberId, member.username, member.age, team.teamId, team.name)
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.teamId))
+                .where(searchPredicates(condition));
+
+        final MemberTeamColumns columns = new MemberTeamColumns();
+        try (ResultSet rs = query.getResults()) {
+            while (rs.next()) {
+                final long teamId = rs.getLong(4);
+                if (rs.wasNull()) {
+                    columns.addWithoutTeam(rs.getLong(1), rs.getString(2), rs.getInt(3));
+                } else {
+                    // 팀 이름은 처음 보는 팀일 때만 읽는다 (row 마다 String 을 만들지 않는다)
+                    columns.add(rs.getLong(1), rs.getString(2), rs.getInt(3), teamId, columns.hasTeam(teamId) ? null : rs.getString(5));
+                }
+            }
+        } catch (SQLException e) {
+            throw sqlQueryFactory.getConfiguration().translate(e);
+        }
+        return columns;
+    }
+
+    private static void checkK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k 는 1 이상이어야 합니다: " + k);
+        }
+    }
+
+    /**
+     * MemberReactiveRepository 가 SQL 렌더링에 같이 쓴다.
+     */
+    SQLQuery<MemberTeamDto> selectMemberTeam(MemberSearchCondition condition) {
+        return sqlQueryFactory
+                .select(new QMemberTeamDto(
+                        member.memberId,
+                        member.username,
+                        member.age,
+                        team.teamId,
+                        team.name))
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.teamId))
+                .where(searchPredicates(condition));
+    }
+
+    private BooleanExpression[] searchPredicates(MemberSearchCondition condition) {
+        return new BooleanExpression[]{
+                eqUsername(condition.getUsername(), condition.isIgnoreCase()),
+                eqTeamName(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())};
+    }
+
+    private BooleanExpression eqUsername(String username, boolean ignoreCase) {
+        if (username == null) {
+            return null;
+        }
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
+    }
+
+    private BooleanExpression eqTeamName(String teamName) {
+        return teamName != null ? team.name.eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+    /**
+     * JPA 쿼리의 auto flush 를 대신한다. 같은 트랜잭션에서 persist 한 엔티티가 SQL 조회에도 보이도록
+     */
+    private void flushPendingWrites() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            em.flush();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package study.querydsl.repository;
+
+import org.hibernate.Hibernate;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * member_team(MemberTeamRead) 비정규화 테이블 유지
+ * Member/Team 이 flush 될 때 같은 커넥션, 같은 트랜잭션에서 member_team 을 고친다.
+ * 팀명 변경은 team_id 기준 update 한 번으로 끝난다.
+ * 벌크 update/delete 는 엔티티 이벤트가 없으므로 호출한 쪽에서 같은 트랜잭션에 refresh(...) 를 부르거나,
+ * 부르지 않으면 MemberTeamReadModelTracker 가 stale 로 표시하고 check-interval 안에 전체를 다시 만든다.
+ */
+@Component
+@ConditionalOnProperty(prefix = "member.read-model", name = "enabled", havingValue = "true")
+public class MemberTeamReadModel implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String TEAM_NAME = "coalesce(?, (select t.name from team t where t.team_id = ?))";
+    private static final String INSERT =
+            "insert into member_team (member_id, username, username_lower, age, team_id, team_name) values (?, ?, ?, ?, ?, " + TEAM_NAME + ")";
+    private static final String UPDATE =
+            "update member_team set username = ?, username_lower = ?, age = ?, team_id = ?, team_name = " + TEAM_NAME + " where member_id = ?";
+    private static final String DELETE = "delete from member_team where member_id = ?";
+    private static final String RENAME_TEAM = "update member_team set team_name = ? where team_id = ?";
+    private static final String DETACH_TEAM = "update member_team set team_id = null, team_name = null where team_id = ?";
+    private static final String SELECT_SOURCE =
+            "select m.member_id, m.username, m.username_lower, m.age, m.team_id, t.name from member m left join team t on m.team_id = t.team_id";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate transactionTemplate;
+    private final MemberTeamReadModelTracker tracker;
+    private final boolean rebuildOnStartup;
+
+    public MemberTeamReadModel(EntityManagerFactory emf,
+                               PlatformTransactionManager transactionManager,
+                               MemberTeamReadModelTracker tracker,
+                               @Value("${member.read-model.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.emf = emf;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tracker = tracker;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @PostConstruct
+    public void register() {
+        final EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+
+        if (rebuildOnStartup) {
+            transactionTemplate.executeWithoutResult(status -> rebuild());
+        }
+    }
+
+    /**
+     * 벌크 DML, CSV 적재 등으로 stale 이면 다시 만든다.
+     */
+    @Scheduled(fixedDelayString = "${member.read-model.check-interval:10s}")
+    public void rebuildIfStale() {
+        if (!tracker.isStale()) {
+            return;
+        }
+        final long marks = tracker.marks();
+        transactionTemplate.executeWithoutResult(status -> rebuild());
+        tracker.rebuilt(marks);
+    }
+
+    /**
+     * member_team 전체 재생성 (set-based)
+     */
+    public void rebuild() {
+        em.createNativeQuery("delete from member_team").executeUpdate();
+        em.createNativeQuery("insert into member_team (member_id, username, username_lower, age, team_id, team_name) " + SELECT_SOURCE)
+                .executeUpdate();
+    }
+
+    /**
+     * 벌크 update 후 대상 회원만 다시 맞춘다. (set-based, 지워진 회원은 member_team 에서도 지운다)
+     * 같은 트랜잭션의 벌크 변경 대상을 모두 넘겨야 한다. (이 트랜잭션의 벌크 변경은 stale 로 치지 않는다)
+     */
+    public void refresh(Collection<Long> memberIds) {
+        tracker.coveredByRefresh();
+        if (memberIds.isEmpty()) {
+            return;
+        }
+        em.createNativeQuery("delete from member_team where member_id in (:ids)")
+                .setParameter("ids", memberIds)
+                .executeUpdate();
+        em.createNativeQuery("insert into member_team (member_id, username, username_lower, age, team_id, team_name) " + SELECT_SOURCE
+                        + " where m.member_id in (:ids)")
+                .setParameter("ids", memberIds)
+                .executeUpdate();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            final Member member = (Member) event.getEntity();
+            execute(event.getSession(), INSERT, (Long) event.getId(), member);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            execute(event.getSession(), UPDATE, (Long) event.getId(), (Member) event.getEntity());
+        } else if (event.getEntity() instanceof Team && teamNameChanged(event)) {
+            final Team team = (Team) event.getEntity();
+            event.getSession().doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(RENAME_TEAM)) {
+                    statement.setString(1, team.getName());
+                    statement.setLong(2, (Long) event.getId());
+                    statement.executeUpdate();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        final String sql = event.getEntity() instanceof Member ? DELETE : event.getEntity() instanceof Team ? DETACH_TEAM : null;
+        if (sql == null) {
+            return;
+        }
+        event.getSession().doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, (Long) event.getId());
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void execute(EventSource session, String sql, Long memberId, Member member) {
+        final Team team = member.getTeam();
+        final Long teamId = teamId(team);
+        // 프록시 상태의 팀은 초기화하지 않고 SQL 에서 팀명을 가져온다.
+        final String teamName = team != null && Hibernate.isInitialized(team) ? team.getName() : null;
+
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int index = 1;
+                if (sql.equals(INSERT)) {
+                    statement.setLong(index++, memberId);
+                }
+                statement.setString(index++, member.getUsername());
+                statement.setString(index++, member.getUsernameLower());
+                statement.setInt(index++, member.getAge());
+                setLong(statement, index++, teamId);
+                statement.setString(index++, teamName);
+                setLong(statement, index++, teamId);
+                if (sql.equals(UPDATE)) {
+                    statement.setLong(index, memberId);
+                }
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    private boolean teamNameChanged(PostUpdateEvent event) {
+        if (event.getOldState() == null) {
+            return true;
+        }
+        final int nameIndex = event.getPersister().getEntityMetamodel().getPropertyIndex("name");
+        return !Objects.equals(event.getOldState()[nameIndex], event.getState()[nameIndex]);
+    }
+
+    private static Long teamId(Team team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId();
+    }
+
+    private static void setLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.BIGINT);
+        } else {
+            statement.setLong(index, value);
+        }
+    }
+}
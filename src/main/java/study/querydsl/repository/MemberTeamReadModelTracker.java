@@ -0,0 +1,142 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.event.MemberBulkStatementTracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * member_team(MemberTeamReadModel) 이 원본과 달라졌는지 추적한다.
+ * 엔티티 이벤트가 없는 벌크 DML(Querydsl/JPQL update, delete, insert-select)을 StatementInspector 체인에서 잡아서
+ * 커밋된 뒤 stale 로 표시한다. stale 인 동안 검색은 member_team 대신 조인 쿼리를 쓰고, MemberTeamReadModel 이 다시 만든다.
+ * - update/delete 는 SQL 모양으로 엔티티 flush 와 구별할 수 없으므로 MemberBulkStatementTracker 가 벌크로 확정한 것만 센다.
+ * - 같은 트랜잭션에서 MemberTeamReadModel.refresh 로 맞춘 벌크 변경은 stale 로 치지 않는다. (MemberTeamReassignment)
+ * - JDBC 로 직접 쓰는 곳(MemberCsvImporter)은 커밋한 뒤에 markStale 을 부른다.
+ * StatementInspector 로도 쓰이기 때문에 EntityManagerFactory 에 의존하는 빈은 쓰지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberTeamReadModelTracker {
+
+    private static final Pattern BULK_STATEMENT = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(update|delete\\s+from|insert\\s+into)\\s+(member|team)\\b(.*?)(?:\\bwhere\\b(.*))?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern INSERT_SELECT = Pattern.compile("\\bselect\\b", Pattern.CASE_INSENSITIVE);
+
+    private final MemberBulkStatementTracker bulkStatements;
+    private final boolean enabled;
+
+    // staleMarks 가 마지막으로 다시 만들 때의 값과 다르면 stale
+    private final AtomicLong staleMarks = new AtomicLong();
+    private volatile long cleanMarks;
+
+    public MemberTeamReadModelTracker(MemberBulkStatementTracker bulkStatements,
+                                      @Value("${member.read-model.enabled:false}") boolean enabled) {
+        this.bulkStatements = bulkStatements;
+        this.enabled = enabled;
+    }
+
+    public String inspect(String sql) {
+        if (!enabled) {
+            return sql;
+        }
+        final Matcher matcher = BULK_STATEMENT.matcher(sql);
+        if (!matcher.find()) {
+            return sql;
+        }
+
+        if (matcher.group(1).toLowerCase().startsWith("insert")) {
+            // 엔티티 insert 는 values, insert-select 만 벌크
+            if (INSERT_SELECT.matcher(matcher.group(3)).find()) {
+                bulk(sql, !TransactionSynchronizationManager.isSynchronizationActive());
+            }
+            return sql;
+        }
+        final String entityName = matcher.group(2).equalsIgnoreCase("member") ? "Member" : "Team";
+        bulkStatements.expect(entityName, committed -> bulk(sql, committed));
+        return sql;
+    }
+
+    private void bulk(String sql, boolean committed) {
+        if (committed) {
+            markStale(sql);
+            return;
+        }
+        final PendingBulk pending = pendingBulk();
+        if (pending.statement == null) {
+            pending.statement = sql;
+        }
+    }
+
+    /**
+     * 현재 트랜잭션의 벌크 변경은 호출한 쪽이 refresh 로 맞췄다. (아직 확정되지 않은 앞 문장도 포함)
+     */
+    void coveredByRefresh() {
+        bulkStatements.settle();
+        if (TransactionSynchronizationManager.isSynchronizationActive() && TransactionSynchronizationManager.hasResource(this)) {
+            ((PendingBulk) TransactionSynchronizationManager.getResource(this)).statement = null;
+        }
+    }
+
+    /**
+     * 커밋된 변경이 member_team 에 반영되지 않았다.
+     */
+    public void markStale(String reason) {
+        if (!enabled) {
+            return;
+        }
+        staleMarks.incrementAndGet();
+        log.warn("member_team 이 원본과 다를 수 있어 다시 만듭니다 (그동안 검색은 조인 쿼리 사용): {}", reason);
+    }
+
+    public boolean isStale() {
+        return enabled && staleMarks.get() != cleanMarks;
+    }
+
+    /**
+     * 다시 만들기 시작할 때의 표시, 다 만든 뒤 rebuilt 에 넘긴다. (그 사이 들어온 표시는 남는다)
+     */
+    long marks() {
+        return staleMarks.get();
+    }
+
+    void rebuilt(long marks) {
+        cleanMarks = marks;
+    }
+
+    private PendingBulk pendingBulk() {
+        PendingBulk pending = (PendingBulk) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            final PendingBulk bulk = new PendingBulk();
+            pending = bulk;
+            TransactionSynchronizationManager.bindResource(this, bulk);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    if (bulk.statement != null) {
+                        markStale(bulk.statement);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MemberTeamReadModelTracker.this);
+                }
+            });
+        }
+        return pending;
+    }
+
+    /**
+     * 트랜잭션에서 처음 잡힌 벌크 SQL (로그용)
+     */
+    private static final class PendingBulk {
+        private String statement;
+    }
+}
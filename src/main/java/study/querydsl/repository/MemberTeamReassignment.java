@@ -0,0 +1,171 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChangeEvent;
+import study.querydsl.event.MemberChangeEventRingBuffer;
+import study.querydsl.shard.MemberShardWriter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 팀 이동 (한 명, 여러 명)
+ * Member.changeTeam 은 team.members 에 add 하기 때문에 관리 중인 Team 의 members 를 전부 로딩한다. (10만 명 팀이면 10만 row)
+ * 여기서는 member.team_id 를 벌크 update 로 바꾸고, 이미 로딩된 컬렉션만 맞춘다. (로딩 안 된 컬렉션은 건드리지 않는다)
+ * - 데이터 버전(ETag)은 StatementInspector(MemberDataVersionInspector)가 update 문을 보고 올린다.
+ * - 엔티티 이벤트가 없으므로 옮겨진 회원의 변경 이벤트와 샤드 반영(MemberShardWriter)은 커밋 후에 직접 하고,
+ *   member_team 읽기 모델은 refresh 를 직접 부른다.
+ */
+@Repository
+public class MemberTeamReassignment {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final JPAQueryFactory queryFactory;
+    private final MemberChangeEventRingBuffer changeEvents;
+    private final ObjectProvider<MemberTeamReadModel> readModel;
+    private final ObjectProvider<MemberShardWriter> shardWriter;
+    private final int chunkSize;
+
+    public MemberTeamReassignment(JPAQueryFactory queryFactory,
+                                  MemberChangeEventRingBuffer changeEvents,
+                                  ObjectProvider<MemberTeamReadModel> readModel,
+                                  ObjectProvider<MemberShardWriter> shardWriter,
+                                  @Value("${member.reassign.chunk-size:1000}") int chunkSize) {
+        this.queryFactory = queryFactory;
+        this.changeEvents = changeEvents;
+        this.readModel = readModel;
+        this.shardWriter = shardWriter;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * teamId 가 null 이면 팀에서 뺀다.
+     * @return 옮겨진 회원 수
+     */
+    @Transactional
+    public long changeTeam(Collection<Long> memberIds, Long teamId) {
+        final List<Long> ids = new ArrayList<>(new LinkedHashSet<>(memberIds));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        final Team target = teamId != null ? em.getReference(Team.class, teamId) : null;
+
+        // 관리 중인 회원의 변경 사항을 먼저 내보내고, 이전 팀의 로딩된 컬렉션에서 뺀다.
+        em.flush();
+        final List<Member> managed = managedMembers(ids);
+        for (Member loaded : managed) {
+            final Team previous = loaded.getTeam();
+            if (isLoaded(previous)) {
+                previous.getMembers().remove(loaded);
+            }
+        }
+
+        final List<Long> moved = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            final List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            final JPAUpdateClause update = queryFactory.update(member);
+            if (target != null) {
+                update.set(member.team, target);
+            } else {
+                update.setNull(member.team);
+            }
+            final long updated = update.where(member.id.in(chunk)).execute();
+            // 없는 id 가 섞였을 때만 실제로 옮겨진 id 를 다시 읽는다.
+            moved.addAll(updated == chunk.size() ? chunk
+                    : queryFactory.select(member.id).from(member).where(member.id.in(chunk)).fetch());
+        }
+
+        // 관리 중인 회원은 DB 값으로 다시 읽는다. (엔티티를 직접 고치면 flush 때 회원마다 update 가 또 나간다)
+        for (Member loaded : managed) {
+            em.refresh(loaded);
+        }
+        // 대상 팀 컬렉션이 이미 로딩돼 있으면 팀 전체가 메모리에 있는 것이므로 옮긴 회원만 읽어서 추가한다.
+        if (isLoaded(target)) {
+            final List<Member> members = target.getMembers();
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                final List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+                for (Member moved : queryFactory.selectFrom(member).where(member.id.in(chunk)).fetch()) {
+                    if (!members.contains(moved)) {
+                        members.add(moved);
+                    }
+                }
+            }
+        }
+
+        readModel.ifAvailable(model -> model.refresh(ids));
+        afterCommit(moved, teamId);
+        return moved.size();
+    }
+
+    @Transactional
+    public long changeTeam(Long memberId, Long teamId) {
+        return changeTeam(List.of(memberId), teamId);
+    }
+
+    /**
+     * MemberChangeInspector 의 범위 이벤트는 바인딩 값(옮겨진 id)을 모르므로 옮겨진 회원마다 row 이벤트를 직접 발행한다.
+     */
+    private void afterCommit(List<Long> moved, Long teamId) {
+        if (moved.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (Long id : moved) {
+                    changeEvents.publish(MemberChangeEvent.row(MemberChangeEvent.Type.UPDATE, "Member", id));
+                }
+                shardWriter.ifAvailable(writer -> {
+                    for (int from = 0; from < moved.size(); from += chunkSize) {
+                        writer.membersMoved(moved.subList(from, Math.min(from + chunkSize, moved.size())), teamId);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 영속성 컨텍스트에 이미 있는 회원만 (없는 회원을 로딩하지 않는다)
+     */
+    private List<Member> managedMembers(List<Long> ids) {
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final org.hibernate.engine.spi.PersistenceContext persistenceContext = session.getPersistenceContextInternal();
+        final EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+
+        final List<Member> managed = new ArrayList<>();
+        for (Long id : ids) {
+            final Object entity = persistenceContext.getEntity(session.generateEntityKey(id, persister));
+            if (entity != null) {
+                managed.add((Member) entity);
+            }
+        }
+        return managed;
+    }
+
+    /**
+     * 팀과 members 컬렉션이 둘 다 이미 로딩된 경우만 true
+     */
+    private static boolean isLoaded(Team team) {
+        return team != null && Hibernate.isInitialized(team) && Hibernate.isInitialized(team.getMembers());
+    }
+}
@@ -0,0 +1,51 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 그룹(팀)별로 크기 k 로 제한된 힙, 윈도우 함수를 쓸 수 없을 때 row 를 흘려보내면서 상위 k 개만 남긴다.
+ * 그룹마다 메모리 O(k), 시간 O(N log k)
+ */
+class MemberTopK {
+
+    private final Comparator<MemberTeamDto> comparator;
+    private final int k;
+    private final Map<Long, PriorityQueue<MemberTeamDto>> groups = new LinkedHashMap<>();
+
+    MemberTopK(Comparator<MemberTeamDto> comparator, int k) {
+        this.comparator = comparator;
+        this.k = k;
+    }
+
+    void add(MemberTeamDto row) {
+        // 힙 top 이 그룹에서 가장 뒤에 올 row (다음에 밀려날 후보)
+        final PriorityQueue<MemberTeamDto> heap = groups.computeIfAbsent(row.getTeamId(),
+                teamId -> new PriorityQueue<>(Math.min(k, 1_024), comparator.reversed()));
+        if (heap.size() < k) {
+            heap.add(row);
+        } else if (comparator.compare(row, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(row);
+        }
+    }
+
+    /**
+     * 팀별 상위 k 개, 팀 안에서는 정렬 순서대로
+     */
+    Map<Long, List<MemberTeamDto>> result() {
+        final Map<Long, List<MemberTeamDto>> result = new LinkedHashMap<>();
+        groups.forEach((teamId, heap) -> {
+            final List<MemberTeamDto> rows = new ArrayList<>(heap);
+            rows.sort(comparator);
+            result.put(teamId, rows);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,321 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.event.MemberBulkStatementTracker;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 회원명 Bloom filter, 없는 이름의 findByUsername 을 DB 에 가지 않고 바로 빈 결과로 끝낸다. (MemberUsernameFilterAspect)
+ * - 기동할 때 username 전체를 스트리밍으로 읽어 만든다.
+ * - Hibernate insert/update 는 이벤트 리스너에서 바로 추가 (롤백돼도 false positive 가 될 뿐 틀리지 않는다)
+ *   트랜잭션 안이면 커밋 후에 한 번 더 넣는다. (다시 만드는 중에 커밋된 이름이 새 필터에서 빠지지 않도록)
+ * - JDBC 로 직접 넣는 곳(MemberCsvImporter)은 put 을 직접 부른다.
+ * - username 을 set 하는 member update 는 엔티티 flush 로 확인될 때까지(MemberBulkStatementTracker) 모든 이름을 "있을 수 있음"으로 답하고,
+ *   벌크로 확정되면 stale 로 표시해서 다시 만들 때까지 그렇게 답한다.
+ * - 삭제는 반영할 수 없으므로 rebuild-interval 마다 다시 만든다.
+ * StatementInspector 로도 쓰이기 때문에 EntityManagerFactory 는 모든 빈이 만들어진 뒤에 가져온다.
+ */
+@Slf4j
+@Component
+public class MemberUsernameFilter implements PostInsertEventListener, PostUpdateEventListener, SmartInitializingSingleton {
+
+    private static final Pattern MEMBER_UPDATE = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*update\\s+member\\s+set\\b(.*?)(?:\\bwhere\\b.*)?$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern SETS_USERNAME = Pattern.compile("\\busername\\s*=", Pattern.CASE_INSENSITIVE);
+
+    private final DataSource dataSource;
+    private final ObjectProvider<EntityManagerFactory> emf;
+    private final MemberBulkStatementTracker bulkStatements;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double fpp;
+    private final Duration rebuildInterval;
+
+    private volatile UsernameBloomFilter current;
+    private volatile UsernameBloomFilter building;
+    private volatile long builtAt;
+
+    // staleMarks 가 마지막으로 다시 만들 때의 값과 다르면 stale
+    private final AtomicLong staleMarks = new AtomicLong();
+    private volatile long cleanMarks = -1;
+    // 엔티티 flush 인지 벌크인지 아직 모르는 username update 수, 0 이 아니면 stale
+    private final AtomicLong unsettled = new AtomicLong();
+
+    private Counter negatives;
+    private Counter positives;
+    private Counter falsePositives;
+
+    public MemberUsernameFilter(DataSource dataSource,
+                                ObjectProvider<EntityManagerFactory> emf,
+                                MemberBulkStatementTracker bulkStatements,
+                                ObjectProvider<MeterRegistry> meterRegistry,
+                                @Value("${member.username-filter.enabled:true}") boolean enabled,
+                                @Value("${member.username-filter.expected-insertions:1000000}") long expectedInsertions,
+                                @Value("${member.username-filter.fpp:0.01}") double fpp,
+                                @Value("${member.username-filter.rebuild-interval:1h}") Duration rebuildInterval) {
+        this.dataSource = dataSource;
+        this.emf = emf;
+        this.bulkStatements = bulkStatements;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        final EventListenerRegistry listeners = emf.getObject().unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, this);
+        listeners.appendListeners(EventType.POST_UPDATE, this);
+
+        meterRegistry.ifAvailable(meters -> {
+            Gauge.builder("member.username.filter.memory", this, filter -> filter.current == null ? 0 : filter.current.memoryBytes())
+                    .baseUnit("bytes")
+                    .register(meters);
+            Gauge.builder("member.username.filter.expected.fpp", this, filter -> filter.current == null ? 1 : filter.current.expectedFpp())
+                    .register(meters);
+            Gauge.builder("member.username.filter.stale", this, filter -> filter.isStale() ? 1 : 0)
+                    .register(meters);
+            negatives = meters.counter("member.username.filter.lookups", "result", "negative");
+            positives = meters.counter("member.username.filter.lookups", "result", "positive");
+            falsePositives = meters.counter("member.username.filter.lookups", "result", "false_positive");
+        });
+
+        rebuild();
+    }
+
+    /**
+     * false 면 확실히 없는 이름
+     */
+    public boolean mightContain(String username) {
+        final UsernameBloomFilter filter = current;
+        if (username == null || filter == null || isStale()) {
+            return true;
+        }
+        final boolean mightContain = filter.mightContain(username);
+        if (negatives != null) {
+            (mightContain ? positives : negatives).increment();
+        }
+        return mightContain;
+    }
+
+    /**
+     * mightContain 이 true 였는데 DB 에 없었을 때 (관측된 false positive 비율 계산용)
+     */
+    public void recordFalsePositive() {
+        if (falsePositives != null) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * 트랜잭션(Spring) 안이면 커밋 후에 한 번 더 넣는다.
+     * Spring 트랜잭션 밖에서 JDBC 로 직접 커밋하는 쪽은 커밋한 뒤에 putCommitted 를 불러야 한다.
+     */
+    public void put(String username) {
+        if (!enabled || username == null) {
+            return;
+        }
+        putNow(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingCommit().add(username);
+        }
+    }
+
+    /**
+     * 커밋된 이름, rebuild 스캔이 커밋 전에 지나갔어도 새 필터에 들어가도록 (MemberCsvImporter)
+     */
+    public void putCommitted(Collection<String> usernames) {
+        if (!enabled) {
+            return;
+        }
+        usernames.forEach(this::putNow);
+    }
+
+    /**
+     * building 을 먼저 읽는다. 읽을 때 null 이면 이후에 시작하는 rebuild 는 커밋된 이름을 스캔에서 읽고,
+     * rebuild 가 끝나서 null 이면 current 가 이미 새 필터다. (current 를 먼저 읽으면 그 사이 교체된 새 필터에서 빠질 수 있다)
+     */
+    private void putNow(String username) {
+        final UsernameBloomFilter next = building;
+        if (next != null) {
+            next.put(username);
+        }
+        final UsernameBloomFilter filter = current;
+        if (filter != null) {
+            filter.put(username);
+        }
+    }
+
+    /**
+     * StatementInspector 체인에서 호출, username 을 바꾸는 member update 는 where 절과 상관없이
+     * 엔티티 flush 로 확인될 때까지 stale 이고, 벌크로 확정되면 다시 만들 때까지 stale
+     */
+    public String inspect(String sql) {
+        if (!enabled) {
+            return sql;
+        }
+        final Matcher matcher = MEMBER_UPDATE.matcher(sql);
+        if (!matcher.find() || !SETS_USERNAME.matcher(matcher.group(1)).find()) {
+            return sql;
+        }
+        unsettled.incrementAndGet();
+        bulkStatements.expect("Member", new MemberBulkStatementTracker.Outcome() {
+            @Override
+            public void entity() {
+                // 새 이름은 onPostUpdate 가 넣는다.
+                unsettled.decrementAndGet();
+            }
+
+            @Override
+            public void bulk(boolean committed) {
+                staleMarks.incrementAndGet();
+                // 커밋 전에 다시 만들면 바뀐 이름을 못 읽으므로 트랜잭션이 끝난 뒤에도 stale 표시
+                if (!committed) {
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            staleMarks.incrementAndGet();
+                        }
+                    });
+                }
+                unsettled.decrementAndGet();
+            }
+
+            @Override
+            public void rolledBack() {
+                unsettled.decrementAndGet();
+            }
+        });
+        return sql;
+    }
+
+    public boolean isStale() {
+        return unsettled.get() != 0 || staleMarks.get() != cleanMarks;
+    }
+
+    @Scheduled(fixedDelayString = "${member.username-filter.check-interval:1m}")
+    public void rebuildIfNeeded() {
+        if (enabled && current != null && (isStale() || System.currentTimeMillis() - builtAt >= rebuildInterval.toMillis())) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 다시 만드는 동안 들어온 이름은 기존 필터와 새 필터 양쪽에 넣는다.
+     */
+    public synchronized void rebuild() {
+        final long marks = staleMarks.get();
+        final long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            final long count;
+            try (ResultSet rs = statement.executeQuery("select count(*) from member")) {
+                rs.next();
+                count = rs.getLong(1);
+            }
+
+            final UsernameBloomFilter next = new UsernameBloomFilter(Math.max(expectedInsertions, count * 2), fpp);
+            building = next;
+            statement.setFetchSize(10_000);
+            try (ResultSet rs = statement.executeQuery("select username from member")) {
+                while (rs.next()) {
+                    final String username = rs.getString(1);
+                    if (username != null) {
+                        next.put(username);
+                    }
+                }
+            }
+            current = next;
+            builtAt = System.currentTimeMillis();
+            cleanMarks = marks;
+            log.info("회원명 필터를 다시 만들었습니다: 회원 {}명, {} bytes, {}ms",
+                    count, next.memoryBytes(), (System.nanoTime() - start) / 1_000_000);
+        } catch (SQLException e) {
+            log.warn("회원명 필터를 다시 만들지 못했습니다, 조회는 DB 로 갑니다", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> pendingCommit() {
+        List<String> pending = (List<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            final List<String> usernames = new ArrayList<>();
+            pending = usernames;
+            TransactionSynchronizationManager.bindResource(this, usernames);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    usernames.forEach(MemberUsernameFilter.this::putNow);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MemberUsernameFilter.this);
+                }
+            });
+        }
+        return pending;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            put(((Member) event.getEntity()).getUsername());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            put(((Member) event.getEntity()).getUsername());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.repository;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * findByUsername 계열 조회 전에 MemberUsernameFilter 를 확인해서 확실히 없는 이름이면 DB 에 가지 않는다.
+ * 트랜잭션의 영속성 컨텍스트에 엔티티가 있으면 flush 안 된 insert/이름 변경이 있을 수 있으므로 필터를 쓰지 않는다.
+ * (필터는 flush 된 insert 부터 알기 때문, 조회 쿼리의 auto flush 로 보이게 될 변경을 놓치지 않도록)
+ */
+@Aspect
+@Component
+public class MemberUsernameFilterAspect {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final MemberUsernameFilter usernameFilter;
+
+    public MemberUsernameFilterAspect(MemberUsernameFilter usernameFilter) {
+        this.usernameFilter = usernameFilter;
+    }
+
+    @Around("execution(java.util.List study.querydsl.repository.MemberRepository.findByUsername(String))"
+            + " || execution(java.util.List study.querydsl.repository.MemberJpaRepository.findByUsername*(String))")
+    public Object skipUnknownUsername(ProceedingJoinPoint joinPoint) throws Throwable {
+        final String username = (String) joinPoint.getArgs()[0];
+        if (hasManagedEntities()) {
+            return joinPoint.proceed();
+        }
+        if (!usernameFilter.mightContain(username)) {
+            return new ArrayList<>();
+        }
+
+        final Object result = joinPoint.proceed();
+        if (username != null && ((List<?>) result).isEmpty()) {
+            usernameFilter.recordFalsePositive();
+        }
+        return result;
+    }
+
+    private boolean hasManagedEntities() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && em.unwrap(SessionImplementor.class).getPersistenceContextInternal().getNumberOfManagedEntities() > 0;
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 회원명 Bloom filter, 여러 스레드에서 put / mightContain 가능 (비트는 CAS 로 켠다)
+ * mightContain 이 false 면 확실히 없는 이름, true 면 있을 수도 있는 이름
+ */
+class UsernameBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+    private final AtomicLong bitsSet = new AtomicLong();
+
+    /**
+     * @param expectedInsertions 예상 이름 수
+     * @param fpp                목표 false positive 비율
+     */
+    UsernameBloomFilter(long expectedInsertions, double fpp) {
+        final long n = Math.max(1, expectedInsertions);
+        final long m = Math.max(64, (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        this.bits = new AtomicLongArray(Math.toIntExact((m + 63) / 64));
+        this.bitSize = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    void put(String username) {
+        final long h1 = hash(username, 0x9e3779b97f4a7c15L);
+        final long h2 = hash(username, 0xc2b2ae3d27d4eb4fL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            final long index = Math.floorMod(h1 + i * h2, bitSize);
+            final int word = (int) (index >>> 6);
+            final long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+            if ((current & mask) == 0) {
+                bitsSet.incrementAndGet();
+            }
+        }
+    }
+
+    boolean mightContain(String username) {
+        final long h1 = hash(username, 0x9e3779b97f4a7c15L);
+        final long h2 = hash(username, 0xc2b2ae3d27d4eb4fL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            final long index = Math.floorMod(h1 + i * h2, bitSize);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 현재 켜진 비트 비율로 추정한 false positive 비율
+     */
+    double expectedFpp() {
+        return Math.pow((double) bitsSet.get() / bitSize, hashCount);
+    }
+
+    long memoryBytes() {
+        return bits.length() * 8L;
+    }
+
+    /**
+     * FNV-1a 64 + murmur3 fmix64
+     */
+    private static long hash(String value, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,34 @@
+package study.querydsl.shard;
+
+/**
+ * team_id 해시로 회원 샤드를 정한다. 팀이 없는 회원은 0번 샤드
+ */
+public class MemberShardRouter {
+
+    private final int shardCount;
+
+    public MemberShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("샤드는 1개 이상이어야 합니다.");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int shardFor(Long teamId) {
+        if (teamId == null) {
+            return 0;
+        }
+        // 연속된 id 가 고르게 퍼지도록 섞어서 나눈다. (murmur3 fmix64)
+        long h = teamId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) Math.floorMod(h, (long) shardCount);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+}
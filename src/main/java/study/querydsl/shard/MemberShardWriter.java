@@ -0,0 +1,137 @@
+package study.querydsl.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.Collection;
+
+/**
+ * JPA 로 커밋된 Member/Team insert/update/delete 를 샤드에 반영한다. (post-commit)
+ * 기동할 때 rebuild-on-startup 이면 샤드를 원본 DB 에서 다시 채운다. (반영은 커밋 후 이벤트로만 되므로 기존 회원이 빠지지 않도록)
+ * - 팀은 모든 샤드에 upsert, 회원은 team_id 샤드에 upsert 하고 다른 샤드에서는 지운다. (팀 이동)
+ * - 팀 이동 벌크 update(MemberTeamReassignment)는 커밋 후에 membersMoved 로 반영한다.
+ * - 그 밖의 벌크 update/delete, JDBC 로 직접 쓰는 곳(MemberCsvImporter)은 엔티티 이벤트가 없어서 반영되지 않는다.
+ * 샤드 반영이 실패해도 원본 트랜잭션은 이미 커밋됐으므로 로그만 남긴다.
+ */
+@Slf4j
+public class MemberShardWriter implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final ShardedMemberRepository shards;
+    private final DataSource source;
+    private final boolean rebuildOnStartup;
+
+    public MemberShardWriter(EntityManagerFactory emf, ShardedMemberRepository shards, DataSource source, boolean rebuildOnStartup) {
+        this.emf = emf;
+        this.shards = shards;
+        this.source = source;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @PostConstruct
+    public void register() {
+        final EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+
+        // 리스너를 먼저 등록해야 채우는 동안 커밋된 쓰기도 반영된다.
+        if (rebuildOnStartup) {
+            shards.rebuild(source);
+        } else {
+            shards.markSeeded();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        upsert(event.getEntity(), (Long) event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        upsert(event.getEntity(), (Long) event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        try {
+            if (event.getEntity() instanceof Member) {
+                shards.deleteMember((Long) event.getId());
+            } else if (event.getEntity() instanceof Team) {
+                shards.deleteTeam((Long) event.getId());
+            }
+        } catch (RuntimeException e) {
+            log.error("샤드 삭제 반영 실패: {} {}", event.getEntity().getClass().getSimpleName(), event.getId(), e);
+        }
+    }
+
+    /**
+     * 커밋된 팀 이동, 회원 row 를 새 팀의 샤드로 옮긴다.
+     */
+    public void membersMoved(Collection<Long> memberIds, Long teamId) {
+        try {
+            shards.moveMembers(memberIds, teamId);
+        } catch (RuntimeException e) {
+            log.error("샤드 팀 이동 반영 실패: 회원 {}명 -> 팀 {}", memberIds.size(), teamId, e);
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        final Class<?> type = persister.getMappedClass();
+        return type == Member.class || type == Team.class;
+    }
+
+    private void upsert(Object entity, Long id) {
+        try {
+            if (entity instanceof Member) {
+                final Member member = (Member) entity;
+                shards.upsertMember(id, member.getUsername(), member.getAge(), teamId(member.getTeam()));
+            } else if (entity instanceof Team) {
+                shards.upsertTeam(id, ((Team) entity).getName());
+            }
+        } catch (RuntimeException e) {
+            log.error("샤드 반영 실패: {} {}", entity.getClass().getSimpleName(), id, e);
+        }
+    }
+
+    private static Long teamId(Team team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId();
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.shard;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * member.sharding.enabled=true 일 때만 샤드 리포지토리와 쓰기 반영(MemberShardWriter)을 등록
+ * member.sharding.urls 에 샤드 JDBC URL 을 순서대로 나열 (순서가 곧 샤드 번호이므로 바꾸면 안 된다)
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "member.sharding", name = "enabled", havingValue = "true")
+public class MemberShardingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ShardedMemberRepository shardedMemberRepository(@Value("${member.sharding.urls}") String[] urls,
+                                                           @Value("${member.sharding.username:sa}") String username,
+                                                           @Value("${member.sharding.password:}") String password) {
+        final List<DataSource> shards = new ArrayList<>(urls.length);
+        for (String url : urls) {
+            shards.add(DataSourceBuilder.create().url(url.trim()).username(username).password(password).build());
+        }
+
+        final ShardedMemberRepository repository = new ShardedMemberRepository(shards);
+        repository.createSchema();
+        return repository;
+    }
+
+    /**
+     * 샤드가 영구 DB 이고 이미 원본과 같으면 rebuild-on-startup=false 로 채우기를 건너뛸 수 있다.
+     */
+    @Bean
+    public MemberShardWriter memberShardWriter(EntityManagerFactory emf,
+                                               ShardedMemberRepository shardedMemberRepository,
+                                               DataSource dataSource,
+                                               @Value("${member.sharding.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        return new MemberShardWriter(emf, shardedMemberRepository, dataSource, rebuildOnStartup);
+    }
+}
@@ -0,0 +1,431 @@
+package study.querydsl.shard;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import lombok.extern.slf4j.Slf4j;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.RelationalPath;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.dml.SQLInsertClause;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.sql.MemberTeamSort;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static study.querydsl.sql.SMember.member;
+import static study.querydsl.sql.STeam.team;
+
+/**
+ * member 는 team_id 해시로 N 개 DB 에 나눠 저장하고, team 은 모든 샤드에 복제한다.
+ * (팀이 모든 샤드에 있으니 member - team 조인은 샤드 안에서 끝난다)
+ * 검색은 모든 샤드에 동시에 보내고(scatter) 요청한 정렬 순서로 k-way merge 한다(gather).
+ * offset/limit 는 샤드마다 offset + limit 개를 가져와서 병합한 뒤 앞에서 offset 만큼 버린다.
+ * member.sharding.enabled 면 MemberRepositoryImpl 의 search, searchPageSimple, searchPageComplex 가 여기로 오고,
+ * JPA 로 커밋된 쓰기는 MemberShardWriter 가 반영한다. 기동 시 원본에서 채우기(rebuild) 전까지 검색은 원본 DB 로 간다.
+ */
+@Slf4j
+public class ShardedMemberRepository implements AutoCloseable {
+
+    private static final String CREATE_TEAM =
+            "create table if not exists team (team_id bigint primary key, name varchar(255))";
+    private static final String CREATE_MEMBER =
+            "create table if not exists member (member_id bigint primary key, age integer not null, username varchar(255), team_id bigint, username_lower varchar(255))";
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final List<DataSource> shards;
+    private final List<SQLQueryFactory> queryFactories = new ArrayList<>();
+    private final MemberShardRouter router;
+    private final ExecutorService executor;
+    // 원본에서 채우기 전에는 검색을 원본 DB 로 보낸다. (MemberRepositoryImpl)
+    private volatile boolean seeded;
+
+    public ShardedMemberRepository(List<DataSource> shards) {
+        this.shards = shards;
+        this.router = new MemberShardRouter(shards.size());
+        this.executor = Executors.newFixedThreadPool(shards.size());
+
+        // 커넥션 반납 리스너가 Configuration 에 등록되므로 샤드마다 따로 만든다.
+        for (DataSource shard : shards) {
+            queryFactories.add(new SQLQueryFactory(new Configuration(H2Templates.builder().build()), shard));
+        }
+    }
+
+    public void createSchema() {
+        for (DataSource shard : shards) {
+            try (Connection connection = shard.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_TEAM);
+                statement.execute(CREATE_MEMBER);
+            } catch (SQLException e) {
+                throw new IllegalStateException("샤드 스키마 생성 실패", e);
+            }
+        }
+    }
+
+    /**
+     * 샤드를 비우고 원본 DB 의 team, member 를 전부 복사한다. (기동 시 MemberShardWriter)
+     * 샤드는 커밋 후 반영으로만 채워지므로, 이미 회원이 있는 DB 에서 샤딩을 켜면 이걸로 먼저 채워야 한다.
+     */
+    public void rebuild(DataSource source) {
+        seeded = false;
+        final long start = System.nanoTime();
+        for (SQLQueryFactory queryFactory : queryFactories) {
+            queryFactory.delete(member).execute();
+            queryFactory.delete(team).execute();
+        }
+
+        long teams = 0;
+        long members = 0;
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setFetchSize(REBUILD_BATCH_SIZE);
+            final List<SQLInsertClause> teamInserts = inserts(team);
+            try (ResultSet rs = statement.executeQuery("select team_id, name from team")) {
+                while (rs.next()) {
+                    for (SQLInsertClause insert : teamInserts) {
+                        insert.set(team.teamId, rs.getLong(1)).set(team.name, rs.getString(2)).addBatch();
+                    }
+                    if (++teams % REBUILD_BATCH_SIZE == 0) {
+                        executeBatches(teamInserts);
+                    }
+                }
+            }
+            executeBatches(teamInserts);
+
+            final List<SQLInsertClause> memberInserts = inserts(member);
+            try (ResultSet rs = statement.executeQuery("select member_id, username, age, team_id from member")) {
+                while (rs.next()) {
+                    final Long teamId = rs.getObject(4, Long.class);
+                    final String username = rs.getString(2);
+                    memberInserts.get(router.shardFor(teamId))
+                            .set(member.memberId, rs.getLong(1))
+                            .set(member.username, username)
+                            .set(member.usernameLower, Member.normalizeUsername(username))
+                            .set(member.age, rs.getInt(3))
+                            .set(member.teamId, teamId)
+                            .addBatch();
+                    if (++members % REBUILD_BATCH_SIZE == 0) {
+                        executeBatches(memberInserts);
+                    }
+                }
+            }
+            executeBatches(memberInserts);
+        } catch (SQLException e) {
+            throw new IllegalStateException("샤드 채우기 실패", e);
+        }
+        seeded = true;
+        log.info("샤드를 원본에서 채웠습니다: 팀 {}개, 회원 {}명, {}ms", teams, members, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 기동 시 채우지 않는 경우(rebuild-on-startup=false) 샤드가 이미 원본과 같다고 표시한다.
+     */
+    public void markSeeded() {
+        seeded = true;
+    }
+
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    private List<SQLInsertClause> inserts(RelationalPath<?> table) {
+        final List<SQLInsertClause> inserts = new ArrayList<>(queryFactories.size());
+        for (SQLQueryFactory queryFactory : queryFactories) {
+            inserts.add(queryFactory.insert(table));
+        }
+        return inserts;
+    }
+
+    private static void executeBatches(List<SQLInsertClause> inserts) {
+        for (SQLInsertClause insert : inserts) {
+            if (insert.getBatchCount() > 0) {
+                insert.execute();
+                insert.clear();
+            }
+        }
+    }
+
+    /**
+     * 팀은 모든 샤드에 복제
+     */
+    public void saveTeam(long teamId, String name) {
+        for (SQLQueryFactory queryFactory : queryFactories) {
+            queryFactory.insert(team)
+                    .set(team.teamId, teamId)
+                    .set(team.name, name)
+                    .execute();
+        }
+    }
+
+    public void saveMember(long memberId, String username, int age, Long teamId) {
+        queryFactories.get(router.shardFor(teamId)).insert(member)
+                .set(member.memberId, memberId)
+                .set(member.username, username)
+                .set(member.usernameLower, Member.normalizeUsername(username))
+                .set(member.age, age)
+                .set(member.teamId, teamId)
+                .execute();
+    }
+
+    /**
+     * 팀 생성/이름 변경, 모든 샤드에 반영
+     */
+    public void upsertTeam(long teamId, String name) {
+        for (SQLQueryFactory queryFactory : queryFactories) {
+            queryFactory.merge(team)
+                    .keys(team.teamId)
+                    .set(team.teamId, teamId)
+                    .set(team.name, name)
+                    .execute();
+        }
+    }
+
+    /**
+     * 회원 생성/변경, 팀이 바뀌어 샤드가 달라졌을 수 있으므로 다른 샤드에서는 지운다.
+     */
+    public void upsertMember(long memberId, String username, int age, Long teamId) {
+        final int target = router.shardFor(teamId);
+        for (int shard = 0; shard < queryFactories.size(); shard++) {
+            if (shard != target) {
+                queryFactories.get(shard).delete(member).where(member.memberId.eq(memberId)).execute();
+            }
+        }
+        queryFactories.get(target).merge(member)
+                .keys(member.memberId)
+                .set(member.memberId, memberId)
+                .set(member.username, username)
+                .set(member.usernameLower, Member.normalizeUsername(username))
+                .set(member.age, age)
+                .set(member.teamId, teamId)
+                .execute();
+    }
+
+    /**
+     * 팀 이동(벌크 update), 샤드에 있는 회원 row 를 새 team_id 의 샤드로 옮긴다.
+     * 대상 샤드에 먼저 쓰고 원래 샤드에서 지운다. (잠깐 두 샤드에 있을 수는 있어도 없는 순간은 없도록)
+     */
+    public void moveMembers(Collection<Long> memberIds, Long teamId) {
+        final int target = router.shardFor(teamId);
+        final SQLQueryFactory targetFactory = queryFactories.get(target);
+        for (int shard = 0; shard < queryFactories.size(); shard++) {
+            if (shard == target) {
+                continue;
+            }
+            final SQLQueryFactory queryFactory = queryFactories.get(shard);
+            final List<Tuple> rows = queryFactory.select(member.memberId, member.username, member.age)
+                    .from(member)
+                    .where(member.memberId.in(memberIds))
+                    .fetch();
+            if (rows.isEmpty()) {
+                continue;
+            }
+            for (Tuple row : rows) {
+                final String username = row.get(member.username);
+                targetFactory.merge(member)
+                        .keys(member.memberId)
+                        .set(member.memberId, row.get(member.memberId))
+                        .set(member.username, username)
+                        .set(member.usernameLower, Member.normalizeUsername(username))
+                        .set(member.age, row.get(member.age))
+                        .set(member.teamId, teamId)
+                        .execute();
+            }
+            queryFactory.delete(member).where(member.memberId.in(memberIds)).execute();
+        }
+        targetFactory.update(member)
+                .set(member.teamId, teamId)
+                .where(member.memberId.in(memberIds))
+                .execute();
+    }
+
+    public void deleteMember(long memberId) {
+        for (SQLQueryFactory queryFactory : queryFactories) {
+            queryFactory.delete(member).where(member.memberId.eq(memberId)).execute();
+        }
+    }
+
+    /**
+     * 팀 삭제, 원본 DB 처럼 남은 회원은 팀 없이 둔다. (샤드는 옮기지 않는다)
+     */
+    public void deleteTeam(long teamId) {
+        for (SQLQueryFactory queryFactory : queryFactories) {
+            queryFactory.delete(team).where(team.teamId.eq(teamId)).execute();
+        }
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        final List<List<MemberTeamDto>> results = scatter(queryFactory -> selectMemberTeam(queryFactory, condition)
+                .orderBy(member.memberId.asc())
+                .fetch());
+        return merge(results, MemberTeamSort.comparator(Sort.unsorted()), 0, Long.MAX_VALUE);
+    }
+
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        final List<MemberTeamDto> content = fetchPage(condition, pageable);
+        return new PageImpl<>(content, pageable, count(condition));
+    }
+
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        final List<MemberTeamDto> content = fetchPage(condition, pageable);
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(condition));
+    }
+
+    private List<MemberTeamDto> fetchPage(MemberSearchCondition condition, Pageable pageable) {
+        final Sort sort = pageable.getSort();
+        // 어느 샤드에서 몇 개가 앞 페이지에 쓰일지 모르므로 샤드마다 offset + size 개를 가져온다.
+        final long fetchSize = pageable.getOffset() + pageable.getPageSize();
+
+        final List<List<MemberTeamDto>> results = scatter(queryFactory -> selectMemberTeam(queryFactory, condition)
+                .orderBy(MemberTeamSort.orderSpecifiers(sort))
+                .limit(fetchSize)
+                .fetch());
+
+        return merge(results, MemberTeamSort.comparator(sort), pageable.getOffset(), pageable.getPageSize());
+    }
+
+    private long count(MemberSearchCondition condition) {
+        long total = 0;
+        for (Long count : scatter(queryFactory -> queryFactory
+                .select(member.memberId)
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.teamId))
+                .where(searchPredicates(condition))
+                .fetchCount())) {
+            total += count;
+        }
+        return total;
+    }
+
+    private SQLQuery<MemberTeamDto> selectMemberTeam(SQLQueryFactory queryFactory, MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.memberId,
+                        member.username,
+                        member.age,
+                        team.teamId,
+                        team.name))
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.teamId))
+                .where(searchPredicates(condition));
+    }
+
+    private <T> List<T> scatter(Function<SQLQueryFactory, T> query) {
+        final List<Future<T>> futures = new ArrayList<>(queryFactories.size());
+        for (SQLQueryFactory queryFactory : queryFactories) {
+            futures.add(executor.submit((Callable<T>) () -> query.apply(queryFactory)));
+        }
+
+        final List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * 샤드별로 정렬된 결과를 k-way merge, 앞에서 offset 개를 건너뛰고 limit 개만 남긴다.
+     */
+    private List<MemberTeamDto> merge(List<List<MemberTeamDto>> results, Comparator<MemberTeamDto> comparator, long offset, long limit) {
+        final PriorityQueue<Cursor> heap = new PriorityQueue<>((a, b) -> comparator.compare(a.current(), b.current()));
+        for (List<MemberTeamDto> result : results) {
+            if (!result.isEmpty()) {
+                heap.add(new Cursor(result));
+            }
+        }
+
+        final List<MemberTeamDto> merged = new ArrayList<>((int) Math.min(limit, 1_024));
+        long skipped = 0;
+        while (!heap.isEmpty() && merged.size() < limit) {
+            final Cursor cursor = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                merged.add(cursor.current());
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private BooleanExpression[] searchPredicates(MemberSearchCondition condition) {
+        return new BooleanExpression[]{
+                condition.getUsername() == null ? null : condition.isIgnoreCase()
+                        ? member.usernameLower.eq(Member.normalizeUsername(condition.getUsername()))
+                        : member.username.eq(condition.getUsername()),
+                condition.getTeamName() != null ? team.name.eq(condition.getTeamName()) : null,
+                condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null,
+                condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null};
+    }
+
+    /**
+     * 스레드 풀과 샤드 커넥션 풀(DataSource 가 AutoCloseable 인 경우)을 닫는다.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) shard).close();
+                } catch (Exception e) {
+                    log.warn("샤드 DataSource 종료 실패", e);
+                }
+            }
+        }
+    }
+
+    private static class Cursor {
+        private final List<MemberTeamDto> rows;
+        private int index;
+
+        private Cursor(List<MemberTeamDto> rows) {
+            this.rows = rows;
+        }
+
+        MemberTeamDto current() {
+            return rows.get(index);
+        }
+
+        boolean advance() {
+            return ++index < rows.size();
+        }
+    }
+}
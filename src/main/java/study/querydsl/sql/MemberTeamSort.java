@@ -0,0 +1,93 @@
+package study.querydsl.sql;
+
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static study.querydsl.sql.SMember.member;
+import static study.querydsl.sql.STeam.team;
+
+/**
+ * member + team 조회(MemberTeamDto)의 정렬 키
+ * 정렬 속성: memberId, username, age, teamId, teamName (member, team 어느 쪽이든)
+ * SQL 과 자바에서 같은 순서가 되도록 null 은 양쪽 모두 앞으로, 같은 값이면 member_id 순서로 정렬한다.
+ */
+public final class MemberTeamSort {
+
+    private MemberTeamSort() {
+    }
+
+    /**
+     * SQL 정렬, 마지막에 항상 member_id 를 붙인다.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static OrderSpecifier<?>[] orderSpecifiers(Sort sort) {
+        final List<OrderSpecifier<?>> specifiers = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            final Order direction = order.isAscending() ? Order.ASC : Order.DESC;
+            specifiers.add(new OrderSpecifier(direction, sortPath(order.getProperty())).nullsFirst());
+        }
+        specifiers.add(member.memberId.asc());
+        return specifiers.toArray(new OrderSpecifier[0]);
+    }
+
+    private static ComparableExpressionBase<?> sortPath(String property) {
+        switch (property) {
+            case "memberId":
+                return member.memberId;
+            case "username":
+                return member.username;
+            case "age":
+                return member.age;
+            case "teamId":
+                return team.teamId;
+            case "teamName":
+                return team.name;
+            default:
+                throw new IllegalArgumentException("정렬할 수 없는 속성입니다: " + property);
+        }
+    }
+
+    /**
+     * orderSpecifiers 와 같은 순서의 자바 Comparator (메모리에서 병합하거나 top-K 를 고를 때)
+     */
+    public static Comparator<MemberTeamDto> comparator(Sort sort) {
+        Comparator<MemberTeamDto> comparator = null;
+        for (Sort.Order order : sort) {
+            final Comparator<MemberTeamDto> next = propertyComparator(order.getProperty(), order.isAscending());
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        final Comparator<MemberTeamDto> byId = Comparator.comparing(MemberTeamDto::getMemberId);
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    private static Comparator<MemberTeamDto> propertyComparator(String property, boolean ascending) {
+        final Comparator<Comparable<Object>> natural = ascending ? Comparator.naturalOrder() : Comparator.reverseOrder();
+        final Comparator<Comparable<Object>> values = Comparator.nullsFirst(natural);
+        return Comparator.comparing(dto -> sortValue(dto, property), values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> sortValue(MemberTeamDto dto, String property) {
+        switch (property) {
+            case "memberId":
+                return (Comparable<Object>) (Comparable<?>) dto.getMemberId();
+            case "username":
+                return (Comparable<Object>) (Comparable<?>) dto.getUsername();
+            case "age":
+                return (Comparable<Object>) (Comparable<?>) dto.getAge();
+            case "teamId":
+                return (Comparable<Object>) (Comparable<?>) dto.getTeamId();
+            case "teamName":
+                return (Comparable<Object>) (Comparable<?>) dto.getTeamName();
+            default:
+                throw new IllegalArgumentException("정렬할 수 없는 속성입니다: " + property);
+        }
+    }
+}
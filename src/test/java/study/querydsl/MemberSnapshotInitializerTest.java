@@ -0,0 +1,61 @@
+package study.querydsl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 스냅샷 복원이 ddl-auto + InitMember 와 같은 데이터를 만드는지 확인
+ * 첫 기동(InitMember 로 넣고 스냅샷 저장)과 두 번째 기동(스냅샷 복원)을 서로 다른 인메모리 DB 로 띄워 비교한다.
+ */
+public class MemberSnapshotInitializerTest {
+
+    private static final String MEMBERS = "select m.member_id, m.username, m.username_lower, m.age, t.name from member m left join team t on m.team_id = t.team_id order by m.member_id";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void restoredSnapshotMatchesInitMember() {
+        final Path snapshot = dir.resolve("querydsl.sql.gz");
+
+        final List<Map<String, Object>> seeded;
+        try (ConfigurableApplicationContext context = start("snapshot-seed", snapshot)) {
+            assertThat(context.getBean(MemberSnapshotInitializer.class).isRestored()).isFalse();
+            seeded = context.getBean(JdbcTemplate.class).queryForList(MEMBERS);
+        }
+        assertThat(seeded).hasSize(100);
+        assertThat(Files.exists(snapshot)).isTrue();
+
+        try (ConfigurableApplicationContext context = start("snapshot-restore", snapshot)) {
+            assertThat(context.getBean(MemberSnapshotInitializer.class).isRestored()).isTrue();
+            final JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            assertThat(jdbcTemplate.queryForList(MEMBERS)).isEqualTo(seeded);
+            // 복원 후 새로 만드는 id 가 기존 id 와 겹치지 않아야 한다 (시퀀스도 복원)
+            final Long nextId = jdbcTemplate.queryForObject("select next value for hibernate_sequence", Long.class);
+            assertThat(nextId).isGreaterThan((Long) seeded.get(seeded.size() - 1).get("MEMBER_ID"));
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String database, Path snapshot) {
+        return new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("local")
+                .run("--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--member.snapshot.restore=true",
+                        "--member.snapshot.path=" + snapshot,
+                        "--member.warmup.enabled=false",
+                        "--logging.level.org.hibernate.SQL=info");
+    }
+}
@@ -0,0 +1,137 @@
+package study.querydsl.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberBatchResult;
+import study.querydsl.dto.MemberBatchRow;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * writer 스레드 1 개로 동시 요청 거절 확인
+ */
+@SpringBootTest(properties = {"member.batch.writer-threads=1", "member.batch.flush-size=2"})
+public class MemberBatchImporterTest {
+
+    @Autowired
+    MemberBatchImporter importer;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private final String prefix = "batch-" + UUID.randomUUID() + "-";
+
+    @AfterEach
+    public void after() {
+        jdbcTemplate.update("delete from member where username like ?", prefix + "%");
+        jdbcTemplate.update("delete from team where name like ?", prefix + "%");
+    }
+
+    @Test
+    public void rejectsWhenAllWritersAreBusy() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        // 첫 요청은 본문을 다 보내지 않고 writer 를 잡고 있다
+        final InputStream slowBody = new InputStream() {
+            @Override
+            public int read() {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }
+        };
+        final CompletableFuture<MemberBatchResult> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return importer.importMembers(slowBody);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> importer.importMembers(body(prefix + "member1")))
+                .isInstanceOf(MemberBatchBusyException.class);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getInserted()).isZero();
+        // writer 가 풀리면 다시 받는다
+        assertThat(importer.importMembers(body(prefix + "member1")).getInserted()).isEqualTo(1);
+    }
+
+    @Test
+    public void malformedLineReportsLineNumber() {
+        final String body = "{\"username\":\"" + prefix + "member1\",\"age\":10}\n"
+                + "{\"username\":\"" + prefix + "member2\",\"age\":10}\n"
+                + "{\"username\":\"" + prefix + "member3\",\"age\":}\n";
+
+        assertThatThrownBy(() -> importer.importMembers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOfSatisfying(MemberBatchParseException.class, e -> assertThat(e.getLine()).isEqualTo(3));
+    }
+
+    @Test
+    public void wrongTypeReportsLineNumber() {
+        final String body = "{\"username\":\"" + prefix + "member1\",\"age\":\"ten\"}\n";
+
+        assertThatThrownBy(() -> importer.importMembers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOfSatisfying(MemberBatchParseException.class, e -> assertThat(e.getLine()).isEqualTo(1));
+    }
+
+    @Test
+    public void rolledBackChunkDoesNotCacheTeamIds() throws Exception {
+        final Map<String, Long> teamIds = new HashMap<>();
+        final BlockingQueue<List<MemberBatchRow>> queue = new ArrayBlockingQueue<>(2);
+        // 두 번째 팀명이 컬럼 길이(255)를 넘어서 chunk 전체가 롤백된다
+        queue.put(List.of(row(prefix + "member1", prefix + "teamA"), row(prefix + "member2", prefix + "x".repeat(300))));
+        queue.put(MemberBatchImporter.END);
+
+        assertThatThrownBy(() -> importer.write(queue, teamIds)).isInstanceOf(RuntimeException.class);
+        assertThat(teamIds).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from team where name like ?", Long.class, prefix + "%")).isZero();
+    }
+
+    @Test
+    public void committedChunkCachesTeamIds() throws Exception {
+        final Map<String, Long> teamIds = new HashMap<>();
+        final BlockingQueue<List<MemberBatchRow>> queue = new ArrayBlockingQueue<>(3);
+        queue.put(List.of(row(prefix + "member1", prefix + "teamA")));
+        queue.put(List.of(row(prefix + "member2", prefix + "teamA")));
+        queue.put(MemberBatchImporter.END);
+
+        assertThat(importer.write(queue, teamIds)).isEqualTo(2);
+        final Long teamId = jdbcTemplate.queryForObject("select team_id from team where name = ?", Long.class, prefix + "teamA");
+        assertThat(teamIds).containsExactly(Map.entry(prefix + "teamA", teamId));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from member where team_id = ?", Long.class, teamId)).isEqualTo(2);
+    }
+
+    private static MemberBatchRow row(String username, String teamName) {
+        final MemberBatchRow row = new MemberBatchRow();
+        row.setUsername(username);
+        row.setAge(10);
+        row.setTeamName(teamName);
+        return row;
+    }
+
+    private static InputStream body(String username) {
+        return new ByteArrayInputStream(("{\"username\":\"" + username + "\",\"age\":10}\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,123 @@
+package study.querydsl.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.event.MemberChangeEvent;
+import study.querydsl.event.MemberChangeEventRingBuffer;
+import study.querydsl.repository.MemberDataVersion;
+import study.querydsl.repository.MemberUsernameFilter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 체크포인트/재시작 확인, commit-size 2 로 커밋 단위를 작게 잡는다.
+ */
+@SpringBootTest(properties = {"member.import.batch-size=2", "member.import.commit-size=2"})
+public class MemberCsvImporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Autowired
+    MemberCsvImporter importer;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    MemberChangeEventRingBuffer changeEventRingBuffer;
+    @Autowired
+    MemberUsernameFilter usernameFilter;
+    @Autowired
+    MemberDataVersion memberDataVersion;
+
+    private final String prefix = "csv-" + UUID.randomUUID() + "-";
+
+    @AfterEach
+    public void after() {
+        jdbcTemplate.update("delete from member where username like ?", prefix + "%");
+        jdbcTemplate.update("delete from team where name like ?", prefix + "%");
+        jdbcTemplate.update("delete from member_import_checkpoint where file_name like ?", dir.toAbsolutePath() + "%");
+    }
+
+    @Test
+    public void resumesFromLastCommit() throws Exception {
+        final Path file = dir.resolve("members.csv");
+        write(file, "username,age,teamName",
+                row(1, 10, "teamA"), row(2, 20, "teamA"), row(3, 30, "teamB"), row(4, 40, ""),
+                prefix + "member5,oops," + prefix + "teamB");
+
+        assertThatThrownBy(() -> importer.importFile(file, true))
+                .isInstanceOf(IllegalArgumentException.class);
+        // 4 번째 row 까지 두 번 커밋, 5 번째 row 는 롤백
+        assertThat(usernames()).containsExactly(prefix + "member1", prefix + "member2", prefix + "member3", prefix + "member4");
+
+        // 잘못된 줄을 고친 뒤 다시 실행하면 체크포인트 뒤부터 이어서 적재한다
+        write(file, "username,age,teamName",
+                row(1, 10, "teamA"), row(2, 20, "teamA"), row(3, 30, "teamB"), row(4, 40, ""),
+                row(5, 50, "teamB"), row(6, 60, "teamC"));
+
+        assertThat(importer.importFile(file, true)).isEqualTo(2);
+        assertThat(usernames()).hasSize(6).doesNotHaveDuplicates();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from team where name like ?", Long.class, prefix + "%")).isEqualTo(3);
+
+        assertThat(importer.importFile(file, true)).isZero();
+        assertThat(usernames()).hasSize(6);
+    }
+
+    @Test
+    public void quotedRows() throws Exception {
+        final Path file = dir.resolve("quoted.csv");
+        write(file, "\"" + prefix + "kim, \"\"junior\"\"\",10,\"" + prefix + "team, A\"");
+
+        assertThat(importer.importFile(file, false)).isEqualTo(1);
+        assertThat(usernames()).containsExactly(prefix + "kim, \"junior\"");
+        assertThat(jdbcTemplate.queryForList("select name from team where name like ?", String.class, prefix + "%"))
+                .containsExactly(prefix + "team, A");
+    }
+
+    @Test
+    public void publishesChangesAfterCommit() throws Exception {
+        final Path file = dir.resolve("events.csv");
+        write(file, row(1, 10, "teamA"), row(2, 20, "teamA"), row(3, 30, "teamB"));
+        final MemberChangeEventRingBuffer.Cursor cursor = changeEventRingBuffer.cursor();
+        final long version = memberDataVersion.current();
+
+        importer.importFile(file, false);
+
+        final List<MemberChangeEvent> events = new ArrayList<>();
+        MemberChangeEvent event;
+        while ((event = cursor.poll()) != null) {
+            events.add(event);
+        }
+        // 커밋 두 번(2 row, 1 row), 커밋마다 새 팀 + Member 범위 이벤트
+        assertThat(events).extracting("entityName").containsExactly("Team", "Member", "Team", "Member");
+        assertThat(events).filteredOn(MemberChangeEvent::isRange).extracting("type")
+                .containsOnly(MemberChangeEvent.Type.INSERT);
+        assertThat(usernameFilter.mightContain(prefix + "member3")).isTrue();
+        // 커밋마다 데이터 버전이 오른다 (ETag)
+        assertThat(memberDataVersion.current()).isEqualTo(version + 2);
+    }
+
+    private String row(int n, int age, String team) {
+        return prefix + "member" + n + "," + age + "," + (team.isEmpty() ? "" : prefix + team);
+    }
+
+    private List<String> usernames() {
+        return jdbcTemplate.queryForList("select username from member where username like ? order by member_id", String.class, prefix + "%");
+    }
+
+    private static void write(Path file, String... lines) throws Exception {
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,102 @@
+package study.querydsl.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MemberCsvParserTest {
+
+    private final MemberCsvParser parser = new MemberCsvParser();
+
+    @Test
+    public void plain() {
+        parse("member1,10,teamA");
+
+        assertThat(parser.username()).isEqualTo("member1");
+        assertThat(parser.age()).isEqualTo(10);
+        assertThat(team()).isEqualTo("teamA");
+    }
+
+    @Test
+    public void emptyTeam() {
+        parse("member1,10,");
+
+        assertThat(parser.hasTeam()).isFalse();
+    }
+
+    @Test
+    public void quotedFieldsWithCommaAndEscapedQuote() {
+        parse("\"kim, \"\"junior\"\"\",\"20\",\"team \"\"A\"\"\"");
+
+        assertThat(parser.username()).isEqualTo("kim, \"junior\"");
+        assertThat(parser.age()).isEqualTo(20);
+        assertThat(team()).isEqualTo("team \"A\"");
+    }
+
+    @Test
+    public void multiByte() {
+        parse("\"회원,1\",30,팀A");
+
+        assertThat(parser.username()).isEqualTo("회원,1");
+        assertThat(team()).isEqualTo("팀A");
+    }
+
+    @Test
+    public void parserIsReusedAcrossRows() {
+        parse("\"aaaaaaaaaa\",1,\"teamA\"");
+        parse("b,2,\"teamB\"");
+
+        assertThat(parser.username()).isEqualTo("b");
+        assertThat(team()).isEqualTo("teamB");
+    }
+
+    @Test
+    public void malformedLines() {
+        assertMalformed("member1,10", "형식");
+        assertMalformed("member1,10,teamA,extra", "형식");
+        assertMalformed("\"member1,10,teamA", "닫히지 않았습니다");
+        assertMalformed("\"member1\"x,10,teamA", "쉼표가 없습니다");
+        assertMalformed("mem\"ber1,10,teamA", "따옴표");
+        assertThatThrownBy(() -> {
+            parse("member1,ten,teamA");
+            parser.age();
+        }).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("숫자");
+        assertThatThrownBy(() -> {
+            parse("member1,,teamA");
+            parser.age();
+        }).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("비어");
+    }
+
+    /**
+     * 버퍼 중간의 한 줄만 파싱하는 경우 (memory-map window 안의 row)
+     */
+    @Test
+    public void rowInsideBuffer() {
+        final byte[] bytes = "header\nmember1,10,teamA\nmember2".getBytes(StandardCharsets.UTF_8);
+        parser.parse(ByteBuffer.wrap(bytes), 7, 23);
+
+        assertThat(parser.username()).isEqualTo("member1");
+        assertThat(team()).isEqualTo("teamA");
+    }
+
+    private void parse(String line) {
+        final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        parser.parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    private String team() {
+        final byte[] bytes = new byte[parser.teamLength()];
+        parser.teamBuffer().get(parser.teamFrom(), bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void assertMalformed(String line, String message) {
+        assertThatThrownBy(() -> parse(line))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(message);
+    }
+}
@@ -0,0 +1,86 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import study.querydsl.repository.MemberDataVersion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /v2, /v3 조건부 GET (ETag, 304), /members/batch 오류 응답
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MemberControllerTest {
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    MemberDataVersion dataVersion;
+
+    @Test
+    public void sameVersionReturnsNotModified() throws Exception {
+        for (String path : new String[]{"/v2/members", "/v3/members"}) {
+            final String etag = etag(path, MediaType.APPLICATION_JSON);
+
+            mockMvc.perform(get(path).param("size", "5").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, etag))
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        }
+    }
+
+    @Test
+    public void writeChangesEtag() throws Exception {
+        final String etag = etag("/v2/members", MediaType.APPLICATION_JSON);
+        dataVersion.markWritten();
+
+        mockMvc.perform(get("/v2/members").param("size", "5").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void etagDependsOnNegotiatedFormat() throws Exception {
+        final String json = etag("/v2/members", MediaType.APPLICATION_JSON);
+        final String smile = etag("/v2/members", SMILE);
+        assertThat(smile).isNotEqualTo(json);
+
+        // JSON 으로 받은 ETag 로 Smile 을 요청하면 304 가 아니라 Smile 본문을 받아야 한다
+        mockMvc.perform(get("/v2/members").param("size", "5").accept(SMILE).header(HttpHeaders.IF_NONE_MATCH, json))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SMILE));
+    }
+
+    @Test
+    public void malformedBatchLineIsBadRequest() throws Exception {
+        // 첫 줄은 chunk 가 차기 전에 멈추므로 저장되지 않는다
+        final String body = "{\"username\":\"batch-error-member1\",\"age\":10}\n{\"username\":member2}\n";
+
+        mockMvc.perform(post("/members/batch").contentType(MediaType.APPLICATION_NDJSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.line").value(2));
+    }
+
+    private String etag(String path, MediaType accept) throws Exception {
+        final String etag = mockMvc.perform(get(path).param("size", "5").accept(accept))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(accept))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("W/\"");
+        return etag;
+    }
+}
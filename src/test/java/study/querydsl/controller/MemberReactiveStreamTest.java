@@ -0,0 +1,82 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /v4/members NDJSON 스트리밍, R2DBC 는 별도 커넥션이므로 데이터를 커밋한 뒤 요청한다.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class MemberReactiveStreamTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private final String prefix = "ndjson-" + UUID.randomUUID() + "-";
+
+    @AfterEach
+    public void after() {
+        jdbcTemplate.update("delete from member where username like ?", prefix + "%");
+        jdbcTemplate.update("delete from team where name like ?", prefix + "%");
+    }
+
+    @Test
+    public void streamsOneMemberPerLine() throws Exception {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            final Team team = new Team(prefix + "team");
+            em.persist(team);
+            for (int i = 0; i < 3; i++) {
+                em.persist(new Member(prefix + "member" + i, 20 + i, team));
+            }
+        });
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        final ResponseEntity<String> response = restTemplate.exchange("/v4/members?teamName={teamName}&ageGoe=21",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class, prefix + "team");
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(response.getHeaders().getContentType()).isNotNull();
+        assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_NDJSON)).isTrue();
+
+        final List<JsonNode> members = new ArrayList<>();
+        for (String line : response.getBody().split("\n")) {
+            if (!line.isBlank()) {
+                members.add(objectMapper.readTree(line));
+            }
+        }
+        assertThat(members).extracting(member -> member.get("username").asText())
+                .containsExactlyInAnyOrder(prefix + "member1", prefix + "member2");
+        assertThat(members).extracting(member -> member.get("teamName").asText()).containsOnly(prefix + "team");
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemberTeamColumnsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void serializedLikeDtoList() throws Exception {
+        final MemberTeamColumns columns = new MemberTeamColumns(1);
+        final List<MemberTeamDto> dtos = List.of(
+                new MemberTeamDto(1L, "member1", 10, 1L, "teamA"),
+                new MemberTeamDto(2L, "member2", 20, 2L, "teamB"),
+                new MemberTeamDto(3L, "member3", 30, 1L, "teamA"),
+                new MemberTeamDto(4L, null, 40, null, null));
+        for (MemberTeamDto dto : dtos) {
+            if (dto.getTeamId() != null) {
+                columns.add(dto.getMemberId(), dto.getUsername(), dto.getAge(), dto.getTeamId(), dto.getTeamName());
+            } else {
+                columns.addWithoutTeam(dto.getMemberId(), dto.getUsername(), dto.getAge());
+            }
+        }
+
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsBytes(columns)))
+                .isEqualTo(objectMapper.readTree(objectMapper.writeValueAsBytes(dtos)));
+    }
+
+    @Test
+    public void growsPastCapacity() {
+        final MemberTeamColumns columns = new MemberTeamColumns(16);
+        for (int i = 0; i < 1_000; i++) {
+            columns.add(i, "member" + i, i % 100, i % 3, "team" + i % 3);
+        }
+
+        assertThat(columns.size()).isEqualTo(1_000);
+        assertThat(columns.username(999)).isEqualTo("member999");
+        assertThat(columns.age(999)).isEqualTo(99);
+        assertThat(columns.teamId(999)).isEqualTo(0L);
+        assertThat(columns.teamName(998)).isEqualTo("team2");
+    }
+
+    @Test
+    public void knownTeamKeepsFirstName() {
+        final MemberTeamColumns columns = new MemberTeamColumns();
+        assertThat(columns.hasTeam(1L)).isFalse();
+        columns.add(1L, "member1", 10, 1L, "teamA");
+        columns.add(2L, "member2", 20, 2L, "teamB");
+
+        assertThat(columns.hasTeam(1L)).isTrue();
+        assertThat(columns.hasTeam(2L)).isTrue();
+        columns.add(3L, "member3", 30, 1L, null);
+
+        assertThat(columns.teamName(2)).isEqualTo("teamA");
+    }
+}
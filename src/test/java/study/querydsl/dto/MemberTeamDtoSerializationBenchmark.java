@@ -0,0 +1,65 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /v2/members 응답(Page<MemberTeamDto>) 직렬화 비교: JSON vs Smile vs CBOR
+ * 전송 바이트 수와 row 당 직렬화 시간(ns)을 출력한다.
+ */
+@Tag("benchmark")
+public class MemberTeamDtoSerializationBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    @Test
+    public void compareFormats() throws Exception {
+        final Page<MemberTeamDto> page = createPage();
+
+        final long json = measure("json", new ObjectMapper(), page);
+        final long smile = measure("smile", new SmileMapper(), page);
+        final long cbor = measure("cbor", new CBORMapper(), page);
+
+        assertThat(smile).isLessThan(json);
+        assertThat(cbor).isLessThan(json);
+    }
+
+    private long measure(String name, ObjectMapper mapper, Page<MemberTeamDto> page) throws Exception {
+        final byte[] bytes = mapper.writeValueAsBytes(page);
+
+        for (int i = 0; i < WARMUP; i++) {
+            mapper.writeValueAsBytes(page);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(page);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-5s bytes = %d, ns/row = %.1f%n", name, bytes.length, (double) elapsed / ITERATIONS / ROWS);
+        return bytes.length;
+    }
+
+    private Page<MemberTeamDto> createPage() {
+        final List<MemberTeamDto> content = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            final long teamId = i % 2 == 0 ? 1L : 2L;
+            content.add(new MemberTeamDto((long) i + 3, "member" + i, i % 100, teamId, teamId == 1L ? "teamA" : "teamB"));
+        }
+        return new PageImpl<>(content, PageRequest.of(0, ROWS), 100_000);
+    }
+}
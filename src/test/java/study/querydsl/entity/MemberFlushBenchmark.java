@@ -0,0 +1,87 @@
+package study.querydsl.entity;
+
+import org.hibernate.engine.spi.ManagedEntity;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 관리 중인 회원이 많을 때 flush 비용과 엔티티당 메모리
+ * 바이트코드 향상 전후 비교: ./gradlew benchmark (향상) / ./gradlew benchmark -PnoEnhance (향상 안 함)
+ * - 향상 안 함: flush 때 엔티티마다 스냅샷과 필드를 하나씩 비교
+ * - 향상: 엔티티가 바뀐 필드를 직접 기록(SelfDirtinessTracker)하므로 안 바뀐 엔티티는 비교하지 않는다.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@Transactional
+public class MemberFlushBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    EntityManager em;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000})
+    public void flush(int size) {
+        for (int i = 0; i < size; i++) {
+            em.persist(new Member("member" + i, i % 100));
+            if (i % 1_000 == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+
+        final long before = usedHeap();
+        final List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+        final long bytesPerEntity = (usedHeap() - before) / size;
+        assertThat(members).hasSize(size);
+
+        // 바뀐 것이 없는 flush: 순수하게 dirty checking 비용
+        long clean = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            em.flush();
+            clean = Math.min(clean, System.nanoTime() - start);
+        }
+
+        // 1% 만 바뀐 flush (수정 루프 후)
+        long dirty = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = round; i < size; i += 100) {
+                members.get(i).setAge(members.get(i).getAge() + 1);
+            }
+            final long start = System.nanoTime();
+            em.flush();
+            dirty = Math.min(dirty, System.nanoTime() - start);
+        }
+
+        System.out.printf("%s, %,d members: %d bytes/entity, clean flush %.2fms, 1%% dirty flush %.2fms%n",
+                enhanced() ? "enhanced" : "not enhanced", size, bytesPerEntity, clean / 1e6, dirty / 1e6);
+        em.clear();
+    }
+
+    private static boolean enhanced() {
+        return ManagedEntity.class.isAssignableFrom(Member.class)
+                && SelfDirtinessTracker.class.isAssignableFrom(Member.class);
+    }
+
+    private long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemberChangeEventRingBufferTest {
+
+    @Test
+    public void eachCursorReadsAllEvents() {
+        final MemberChangeEventRingBuffer ringBuffer = new MemberChangeEventRingBuffer(8);
+        final MemberChangeEventRingBuffer.Cursor first = ringBuffer.cursor();
+        final MemberChangeEventRingBuffer.Cursor second = ringBuffer.cursor();
+
+        ringBuffer.publish(MemberChangeEvent.row(MemberChangeEvent.Type.INSERT, "Member", 1L));
+        ringBuffer.publish(MemberChangeEvent.range(MemberChangeEvent.Type.UPDATE, "Member", "age<?"));
+
+        assertThat(drain(first)).extracting("id").containsExactly(1L, null);
+        assertThat(drain(second)).extracting("type").containsExactly(MemberChangeEvent.Type.INSERT, MemberChangeEvent.Type.UPDATE);
+        assertThat(first.poll()).isNull();
+    }
+
+    @Test
+    public void slowCursorSkipsOverwrittenEvents() {
+        final MemberChangeEventRingBuffer ringBuffer = new MemberChangeEventRingBuffer(4);
+        final MemberChangeEventRingBuffer.Cursor cursor = ringBuffer.cursor();
+
+        for (long id = 1; id <= 10; id++) {
+            ringBuffer.publish(MemberChangeEvent.row(MemberChangeEvent.Type.INSERT, "Member", id));
+        }
+
+        // 용량 4 -> 마지막 4개만 남는다.
+        assertThat(drain(cursor)).extracting("id").containsExactly(7L, 8L, 9L, 10L);
+        assertThat(cursor.getDropped()).isEqualTo(6);
+    }
+
+    /**
+     * 발행자가 슬롯에 늦게 쓰더라도 한 바퀴 전 이벤트가 새 이벤트를 덮어쓰지 않아야 한다.
+     * 다 끝난 뒤에는 마지막 capacity 개가 빠짐없이 남아 있어야 한다.
+     */
+    @Test
+    public void concurrentPublishersKeepNewestLap() throws Exception {
+        final int capacity = 8;
+        final int publishers = 8;
+        final int perPublisher = 20_000;
+        for (int round = 0; round < 20; round++) {
+            final MemberChangeEventRingBuffer ringBuffer = new MemberChangeEventRingBuffer(capacity);
+            final MemberChangeEventRingBuffer.Cursor cursor = ringBuffer.cursor();
+            final CountDownLatch start = new CountDownLatch(1);
+            final ExecutorService executor = Executors.newFixedThreadPool(publishers);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int p = 0; p < publishers; p++) {
+                    final long base = (long) p * perPublisher;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        for (long id = base; id < base + perPublisher; id++) {
+                            ringBuffer.publish(MemberChangeEvent.row(MemberChangeEvent.Type.INSERT, "Member", id));
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            final long published = (long) publishers * perPublisher;
+            assertThat(drain(cursor)).hasSize(capacity).doesNotHaveDuplicates();
+            assertThat(cursor.getDropped()).isEqualTo(published - capacity);
+        }
+    }
+
+    private List<MemberChangeEvent> drain(MemberChangeEventRingBuffer.Cursor cursor) {
+        final List<MemberChangeEvent> events = new ArrayList<>();
+        MemberChangeEvent event;
+        while ((event = cursor.poll()) != null) {
+            events.add(event);
+        }
+        return events;
+    }
+}
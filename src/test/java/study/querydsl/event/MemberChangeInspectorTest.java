@@ -0,0 +1,185 @@
+package study.querydsl.event;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 커밋된 변경이 어떤 이벤트로 나가는지
+ * - 엔티티 insert/update/delete: MemberChangeListener 의 row 이벤트만
+ * - 벌크 update/delete: MemberChangeInspector 의 범위 이벤트 (where 가 "member_id=?" 하나여도)
+ */
+@SpringBootTest
+public class MemberChangeInspectorTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    MemberChangeEventRingBuffer ringBuffer;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final String prefix = "change-" + UUID.randomUUID() + "-";
+    private MemberChangeEventRingBuffer.Cursor cursor;
+
+    @BeforeEach
+    public void before() {
+        cursor = ringBuffer.cursor();
+    }
+
+    @AfterEach
+    public void after() {
+        tx().executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like :prefix")
+                    .setParameter("prefix", prefix + "%")
+                    .executeUpdate();
+            em.createQuery("delete from Team t where t.name like :prefix")
+                    .setParameter("prefix", prefix + "%")
+                    .executeUpdate();
+        });
+    }
+
+    @Test
+    public void entityInsertUpdateDelete() {
+        final Long id = persist("member1");
+        tx().executeWithoutResult(status -> em.find(Member.class, id).setAge(20));
+        tx().executeWithoutResult(status -> em.remove(em.find(Member.class, id)));
+
+        assertThat(drain()).extracting("type", "entityName", "id").containsExactly(
+                tuple(MemberChangeEvent.Type.INSERT, "Member", id),
+                tuple(MemberChangeEvent.Type.UPDATE, "Member", id),
+                tuple(MemberChangeEvent.Type.DELETE, "Member", id));
+    }
+
+    @Test
+    public void entityTeamRename() {
+        final Long teamId = tx().execute(status -> {
+            final Team saved = new Team(prefix + "teamA");
+            em.persist(saved);
+            return saved.getId();
+        });
+        tx().executeWithoutResult(status -> em.find(Team.class, teamId).setName(prefix + "teamB"));
+
+        assertThat(drain()).extracting("type", "entityName", "id").containsExactly(
+                tuple(MemberChangeEvent.Type.INSERT, "Team", teamId),
+                tuple(MemberChangeEvent.Type.UPDATE, "Team", teamId));
+    }
+
+    @Test
+    public void bulkRangeUpdate() {
+        persist("member1");
+        persist("member2");
+        drain();
+
+        tx().executeWithoutResult(status -> queryFactory.update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.username.startsWith(prefix))
+                .execute());
+
+        final List<MemberChangeEvent> events = drain();
+        assertThat(events).extracting("type", "entityName", "range")
+                .containsExactly(tuple(MemberChangeEvent.Type.UPDATE, "Member", true));
+        assertThat(events.get(0).getPredicate()).containsIgnoringCase("username");
+    }
+
+    /**
+     * "where member_id=?" 는 엔티티 flush 와 모양이 같지만 엔티티 이벤트가 없으므로 범위 이벤트로 나가야 한다.
+     */
+    @Test
+    public void bulkUpdateByOneId() {
+        final Long id = persist("member1");
+        drain();
+
+        tx().executeWithoutResult(status -> queryFactory.update(member)
+                .set(member.age, 99)
+                .where(member.id.eq(id))
+                .execute());
+
+        assertThat(drain()).extracting("type", "entityName", "range")
+                .containsExactly(tuple(MemberChangeEvent.Type.UPDATE, "Member", true));
+    }
+
+    @Test
+    public void bulkDeleteByOneId() {
+        final Long teamId = tx().execute(status -> {
+            final Team saved = new Team(prefix + "team");
+            em.persist(saved);
+            return saved.getId();
+        });
+        drain();
+
+        tx().executeWithoutResult(status -> queryFactory.delete(team).where(team.id.eq(teamId)).execute());
+
+        assertThat(drain()).extracting("type", "entityName", "range")
+                .containsExactly(tuple(MemberChangeEvent.Type.DELETE, "Team", true));
+    }
+
+    @Test
+    public void bulkAndEntityUpdateInOneTransaction() {
+        final Long id = persist("member1");
+        drain();
+
+        tx().executeWithoutResult(status -> {
+            queryFactory.update(member).set(member.age, 1).where(member.id.eq(id)).execute();
+            final Member found = em.find(Member.class, id);
+            found.setAge(2);
+            em.flush();
+        });
+
+        assertThat(drain()).extracting("type", "entityName", "range").containsExactlyInAnyOrder(
+                tuple(MemberChangeEvent.Type.UPDATE, "Member", true),
+                tuple(MemberChangeEvent.Type.UPDATE, "Member", false));
+    }
+
+    @Test
+    public void rolledBackBulkUpdateIsNotPublished() {
+        final Long id = persist("member1");
+        drain();
+
+        tx().executeWithoutResult(status -> {
+            queryFactory.update(member).set(member.age, 99).where(member.id.eq(id)).execute();
+            status.setRollbackOnly();
+        });
+
+        assertThat(drain()).isEmpty();
+    }
+
+    private Long persist(String username) {
+        return tx().execute(status -> {
+            final Member saved = new Member(prefix + username, 10);
+            em.persist(saved);
+            return saved.getId();
+        });
+    }
+
+    private List<MemberChangeEvent> drain() {
+        final List<MemberChangeEvent> events = new ArrayList<>();
+        for (MemberChangeEvent event = cursor.poll(); event != null; event = cursor.poll()) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+}
@@ -0,0 +1,244 @@
+package study.querydsl.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /v1 ~ /v3/members 부하 테스트 (./gradlew loadTest)
+ * 인메모리 H2 에 데이터를 넣고 localhost 로 open model(고정 도착률) 트래픽을 보낸다.
+ * 지연 시간은 "실제 전송 시각"이 아니라 "보내기로 예정된 시각"부터 재기 때문에 coordinated omission 이 보정된다.
+ * baseline(src/test/resources/loadtest/baseline.properties)이 없으면 건너뛰고, -Dloadtest.updateBaseline=true 일 때만 새로 쓴다.
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+        "logging.level.org.hibernate.SQL=info"})
+public class MemberLoadTest {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final int members = Integer.getInteger("loadtest.members", 10_000);
+    private final int rate = Integer.getInteger("loadtest.rate", 200);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup", 10);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration", 30);
+    private final double tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.2"));
+    private final boolean updateBaseline = Boolean.getBoolean("loadtest.updateBaseline");
+    private final Path baselinePath = Paths.get(System.getProperty("loadtest.baseline", "src/test/resources/loadtest/baseline.properties"));
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    public void openModel() throws IOException {
+        Assumptions.assumeTrue(updateBaseline || Files.exists(baselinePath),
+                "baseline 이 없습니다: " + baselinePath + " (-Dloadtest.updateBaseline=true 로 만든다)");
+        seed();
+
+        final List<RequestShape> mix = mix();
+        drive(mix, warmupSeconds);
+        final Map<String, Histogram> histograms = drive(mix, durationSeconds);
+
+        report(histograms);
+        if (updateBaseline) {
+            saveBaseline(histograms);
+            return;
+        }
+        assertThat(compareWithBaseline(histograms)).isEmpty();
+    }
+
+    private void seed() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            final Team teamA = new Team("teamA");
+            final Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+
+            for (int i = 0; i < members; i++) {
+                em.persist(new Member("member" + i, i % 100, i % 2 == 0 ? teamA : teamB));
+                if (i % 1_000 == 0) {
+                    em.flush();
+                    em.clear();
+                    teamA.getMembers().clear();
+                    teamB.getMembers().clear();
+                }
+            }
+        });
+    }
+
+    /**
+     * 검색 조건 모양, 페이지 깊이별 요청과 가중치
+     * -Dloadtest.mix=v2-page0=5,v3-team-deep=1 처럼 가중치를 바꿀 수 있다.
+     */
+    private List<RequestShape> mix() {
+        final Map<String, RequestShape> shapes = new LinkedHashMap<>();
+        shapes.put("v1-team-age", new RequestShape("v1-team-age", "/v1/members?teamName=teamA&ageGoe=10&ageLoe=20", 2));
+        shapes.put("v1-username", new RequestShape("v1-username", "/v1/members?username=member42", 2));
+        shapes.put("v2-page0", new RequestShape("v2-page0", "/v2/members?page=0&size=20", 4));
+        shapes.put("v2-deep", new RequestShape("v2-deep", "/v2/members?page=200&size=20", 1));
+        shapes.put("v3-page0", new RequestShape("v3-page0", "/v3/members?page=0&size=20", 4));
+        shapes.put("v3-team-deep", new RequestShape("v3-team-deep", "/v3/members?teamName=teamB&ageGoe=30&page=100&size=20", 1));
+
+        final String override = System.getProperty("loadtest.mix");
+        if (override != null && !override.isBlank()) {
+            shapes.replaceAll((name, shape) -> new RequestShape(name, shape.path, 0));
+            for (String entry : override.split(",")) {
+                final String[] pair = entry.trim().split("=");
+                final RequestShape shape = shapes.get(pair[0]);
+                if (shape == null) {
+                    throw new IllegalArgumentException("알 수 없는 요청 모양: " + pair[0]);
+                }
+                shapes.put(pair[0], new RequestShape(pair[0], shape.path, Integer.parseInt(pair[1])));
+            }
+        }
+
+        final List<RequestShape> weighted = new ArrayList<>();
+        for (RequestShape shape : shapes.values()) {
+            for (int i = 0; i < shape.weight; i++) {
+                weighted.add(shape);
+            }
+        }
+        return weighted;
+    }
+
+    private Map<String, Histogram> drive(List<RequestShape> mix, int seconds) {
+        final Map<String, Histogram> histograms = new LinkedHashMap<>();
+        histograms.put("all", new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+        for (RequestShape shape : mix) {
+            histograms.putIfAbsent(shape.name, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+        }
+
+        final LongAdder errors = new LongAdder();
+        final Random random = new Random(42);
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        final long total = (long) rate * seconds;
+        final List<CompletableFuture<?>> inFlight = new ArrayList<>((int) total);
+        final long start = System.nanoTime();
+
+        for (long i = 0; i < total; i++) {
+            final long intended = start + i * intervalNanos;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            final RequestShape shape = mix.get(random.nextInt(mix.size()));
+            final HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + shape.path))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+
+            inFlight.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        final long micros = Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                        histograms.get(shape.name).recordValue(micros);
+                        histograms.get("all").recordValue(micros);
+                        if (error != null || response.statusCode() != 200) {
+                            errors.increment();
+                        }
+                    }));
+        }
+
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        assertThat(errors.sum()).as("실패한 요청 수").isZero();
+        return histograms;
+    }
+
+    private void report(Map<String, Histogram> histograms) {
+        System.out.printf("rate = %d req/s, duration = %ds%n", rate, durationSeconds);
+        System.out.printf("%-14s %8s %10s %10s %10s %10s%n", "shape", "count", "p50(us)", "p99(us)", "p99.9(us)", "max(us)");
+        histograms.forEach((name, h) -> System.out.printf("%-14s %8d %10d %10d %10d %10d%n",
+                name, h.getTotalCount(),
+                h.getValueAtPercentile(50), h.getValueAtPercentile(99),
+                h.getValueAtPercentile(99.9), h.getMaxValue()));
+    }
+
+    private void saveBaseline(Map<String, Histogram> histograms) throws IOException {
+        final Properties baseline = new Properties();
+        histograms.forEach((name, h) -> baseline.setProperty(name + ".p99.us", String.valueOf(h.getValueAtPercentile(99))));
+        Files.createDirectories(baselinePath.getParent());
+        try (OutputStream out = Files.newOutputStream(baselinePath)) {
+            baseline.store(out, "member load test p99 baseline, rate=" + rate + "/s");
+        }
+        System.out.println("baseline 저장: " + baselinePath);
+    }
+
+    /**
+     * @return baseline 대비 p99 가 tolerance 이상 나빠진 항목
+     */
+    private List<String> compareWithBaseline(Map<String, Histogram> histograms) throws IOException {
+        final List<String> regressions = new ArrayList<>();
+        final Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(baselinePath)) {
+            baseline.load(in);
+        }
+
+        histograms.forEach((name, h) -> {
+            final String expected = baseline.getProperty(name + ".p99.us");
+            if (expected == null) {
+                return;
+            }
+            final long p99 = h.getValueAtPercentile(99);
+            final long limit = (long) (Long.parseLong(expected) * (1 + tolerance));
+            if (p99 > limit) {
+                regressions.add(name + ": p99 " + p99 + "us > " + limit + "us (baseline " + expected + "us)");
+            }
+        });
+        return regressions;
+    }
+
+    private static class RequestShape {
+        private final String name;
+        private final String path;
+        private final int weight;
+
+        private RequestShape(String name, String path, int weight) {
+            this.name = name;
+            this.path = path;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package study.querydsl.monitor;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Connection/PreparedStatement/Statement JDK 프록시 확인, threshold 0 이라 모든 SQL 이 기록된다.
+ */
+public class SlowQueryDataSourceTest {
+
+    private final JdbcDataSource target = new JdbcDataSource();
+
+    @BeforeEach
+    public void before() throws Exception {
+        target.setURL("jdbc:h2:mem:slow-query-test;DB_CLOSE_DELAY=-1");
+        try (Connection connection = target.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists person (id bigint primary key, name varchar(255), age int)");
+            statement.execute("delete from person");
+        }
+    }
+
+    @Test
+    public void parametersAreMaskedByDefault() throws Exception {
+        final SlowQueryLog log = new SlowQueryLog(Duration.ZERO, 10, false);
+
+        insert(new SlowQueryDataSource(target, log), 1L, "member1");
+
+        final SlowQuery query = log.entries().get(0);
+        assertThat(query.getSql()).startsWith("insert into person");
+        assertThat(query.getParameters()).containsExactly("?(Long)", "?(String)", "null");
+    }
+
+    @Test
+    public void parametersAreShownWhenEnabled() throws Exception {
+        final SlowQueryLog log = new SlowQueryLog(Duration.ZERO, 10, true);
+
+        insert(new SlowQueryDataSource(target, log), 1L, "member1");
+
+        assertThat(log.entries().get(0).getParameters()).containsExactly("1", "member1", "null");
+    }
+
+    @Test
+    public void batchedAndClearedParameters() throws Exception {
+        final SlowQueryLog log = new SlowQueryLog(Duration.ZERO, 10, true);
+
+        try (Connection connection = new SlowQueryDataSource(target, log).getConnection();
+             PreparedStatement statement = connection.prepareStatement("select name from person where id = ? and age = ?")) {
+            statement.setLong(1, 1L);
+            statement.setInt(2, 10);
+            statement.clearParameters();
+            statement.setLong(1, 2L);
+            statement.setInt(2, 20);
+            try (ResultSet rs = statement.executeQuery()) {
+                assertThat(rs.next()).isFalse();
+            }
+        }
+
+        assertThat(log.entries().get(0).getParameters()).containsExactly("2", "20");
+    }
+
+    @Test
+    public void plainStatementsAreRecordedWithoutParameters() throws Exception {
+        final SlowQueryLog log = new SlowQueryLog(Duration.ZERO, 10, false);
+        final int before = StatementCounter.current();
+
+        try (Connection connection = new SlowQueryDataSource(target, log).getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("update person set age = age + 1");
+        }
+
+        assertThat(log.entries()).extracting("sql").containsExactly("update person set age = age + 1");
+        assertThat(log.entries().get(0).getParameters()).isEmpty();
+        assertThat(StatementCounter.current()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void fastStatementsAreNotRecorded() throws Exception {
+        final SlowQueryLog log = new SlowQueryLog(Duration.ofMinutes(1), 10, true);
+
+        insert(new SlowQueryDataSource(target, log), 1L, "member1");
+
+        assertThat(log.entries()).isEmpty();
+    }
+
+    @Test
+    public void proxiesBehaveLikeTargets() throws Exception {
+        final SlowQueryLog log = new SlowQueryLog(Duration.ZERO, 10, true);
+
+        try (Connection connection = new SlowQueryDataSource(target, log).getConnection()) {
+            assertThat(connection).isEqualTo(connection);
+            assertThat(connection.hashCode()).isEqualTo(System.identityHashCode(connection));
+            assertThat(connection.isWrapperFor(org.h2.jdbc.JdbcConnection.class)).isTrue();
+            assertThat(connection.unwrap(org.h2.jdbc.JdbcConnection.class)).isNotNull();
+
+            // CallableStatement 는 감싸지 않는다 (PreparedStatement 프록시로 바꾸면 CallableStatement 로 캐스팅할 수 없다)
+            try (CallableStatement call = connection.prepareCall("call 1")) {
+                assertThat(call).isInstanceOf(CallableStatement.class);
+            }
+        }
+        assertThat(log.entries()).isEmpty();
+    }
+
+    private static void insert(SlowQueryDataSource dataSource, long id, String name) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("insert into person (id, name, age) values (?, ?, ?)")) {
+            statement.setLong(1, id);
+            statement.setString(2, name);
+            statement.setNull(3, Types.INTEGER);
+            statement.executeUpdate();
+        }
+    }
+}
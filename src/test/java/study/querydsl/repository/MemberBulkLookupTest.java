@@ -0,0 +1,95 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberLookupResult;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * temp-table-threshold 를 낮춰서 임시 테이블 + unnest(?) 조인 경로를 확인
+ */
+@SpringBootTest(properties = "member.lookup.temp-table-threshold=4")
+@Transactional
+public class MemberBulkLookupTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+
+    private final String prefix = "lookup-" + UUID.randomUUID() + "-";
+
+    @Test
+    public void idsAboveThresholdKeepInputOrder() {
+        final List<Long> ids = persistMembers(5);
+
+        final MemberLookupResult<Long> result = memberRepository.findAllByIds(
+                List.of(ids.get(4), -1L, ids.get(0), ids.get(2), -2L, ids.get(4), ids.get(1)));
+
+        // 중복 키는 한 번만, 없는 키는 입력 순서대로 missing
+        assertThat(result.getFound()).extracting("id").containsExactly(ids.get(4), ids.get(0), ids.get(2), ids.get(1));
+        assertThat(result.getMissing()).containsExactly(-1L, -2L);
+        assertTempTableEmpty("member_lookup_id");
+    }
+
+    @Test
+    public void usernamesAboveThresholdKeepInputOrder() {
+        persistMembers(5);
+
+        final MemberLookupResult<String> result = memberRepository.findAllByUsernames(
+                List.of(prefix + "member3", prefix + "nobody", prefix + "member0", prefix + "member4", prefix + "member1"));
+
+        assertThat(result.getFound()).extracting("username")
+                .containsExactly(prefix + "member3", prefix + "member0", prefix + "member4", prefix + "member1");
+        assertThat(result.getMissing()).containsExactly(prefix + "nobody");
+        assertTempTableEmpty("member_lookup_username");
+    }
+
+    @Test
+    public void tempTableIsReusedInSameTransaction() {
+        final List<Long> ids = persistMembers(6);
+
+        final MemberLookupResult<Long> first = memberRepository.findAllByIds(ids.subList(0, 4));
+        final MemberLookupResult<Long> second = memberRepository.findAllByIds(List.of(ids.get(5), ids.get(3), ids.get(2), -1L));
+
+        // 앞 조회의 키가 남아 있으면 두 번째 결과에 섞인다
+        assertThat(first.getFound()).extracting("id").containsExactlyElementsOf(ids.subList(0, 4));
+        assertThat(second.getFound()).extracting("id").containsExactly(ids.get(5), ids.get(3), ids.get(2));
+        assertThat(second.getMissing()).containsExactly(-1L);
+    }
+
+    @Test
+    public void belowThresholdUsesInList() {
+        final List<Long> ids = persistMembers(3);
+
+        final MemberLookupResult<Long> result = memberRepository.findAllByIds(List.of(ids.get(2), -1L, ids.get(0)));
+
+        assertThat(result.getFound()).extracting("id").containsExactly(ids.get(2), ids.get(0));
+        assertThat(result.getMissing()).containsExactly(-1L);
+    }
+
+    private List<Long> persistMembers(int count) {
+        final List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Member member = new Member(prefix + "member" + i, i);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.flush();
+        return ids;
+    }
+
+    private void assertTempTableEmpty(String table) {
+        final Number rows = (Number) em.createNativeQuery("select count(*) from " + table).getSingleResult();
+        assertThat(rows.longValue()).isZero();
+    }
+}
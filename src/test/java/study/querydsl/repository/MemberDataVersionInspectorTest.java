@@ -0,0 +1,44 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemberDataVersionInspectorTest {
+
+    private final MemberDataVersion dataVersion = new MemberDataVersion();
+    private final MemberDataVersionInspector inspector = new MemberDataVersionInspector(dataVersion);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "insert into member (age, team_id, username, username_lower, member_id) values (?, ?, ?, ?, ?)",
+            "update member set age=? where member_id=?",
+            "delete from member where age<?",
+            "insert into team (name, team_id) values (?, ?)",
+            "UPDATE Team SET name=? WHERE team_id=?",
+            "/* update Member m set m.age = m.age + 1 */ update member set age=age+1",
+            "  delete\n from\n team where team_id=?"})
+    public void writesBumpVersion(String sql) {
+        final long before = dataVersion.current();
+
+        assertThat(inspector.inspect(sql)).isEqualTo(sql);
+        assertThat(dataVersion.current()).isGreaterThan(before);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "select member0_.member_id as member_i1_1_ from member member0_",
+            "insert into member_team (member_id, username, username_lower, age, team_id, team_name) values (?, ?, ?, ?, ?, ?)",
+            "update member_team set team_name = ? where team_id = ?",
+            "delete from member_team where member_id = ?",
+            "merge into member_import_checkpoint key (file_name) values (?, ?, ?)",
+            "insert into hello (id) values (?)",
+            "select * from team where name = 'update member'"})
+    public void otherStatementsAreIgnored(String sql) {
+        final long before = dataVersion.current();
+
+        inspector.inspect(sql);
+        assertThat(dataVersion.current()).isEqualTo(before);
+    }
+}
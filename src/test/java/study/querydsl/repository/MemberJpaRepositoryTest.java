@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import org.hibernate.engine.spi.SessionImplementor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -56,6 +57,22 @@ public class MemberJpaRepositoryTest {
         assertThat(username_querydsl).extracting("age").containsExactly(10);
     }
 
+    @Test
+    public void readOnlyQueryTest() {
+        memberJpaRepository.save(new Member("member1", 10));
+        memberJpaRepository.save(new Member("member2", 20));
+        em.flush();
+        em.clear();
+
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+
+        // read-only 로 로딩된 엔티티는 변경 감지용 스냅샷(loadedState)이 없다.
+        for (Member member : memberJpaRepository.findAll_Querydsl()) {
+            assertThat(session.getPersistenceContext().getEntry(member).isReadOnly()).isTrue();
+            assertThat(session.getPersistenceContext().getEntry(member).getLoadedState()).isNull();
+        }
+    }
+
     @Test
     public void basicQuerydslJoinTest() {
         // member - 4
@@ -0,0 +1,117 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemberPagePrefetcherTest {
+
+    private final MemberDataVersion dataVersion = new MemberDataVersion();
+    private final MemberPagePrefetcher prefetcher = new MemberPagePrefetcher(dataVersion, new SimpleDriverDataSource(),
+            true, 1, 4, Duration.ofSeconds(30), Duration.ofSeconds(5), 100, 2, 0.5, Duration.ofMinutes(10));
+
+    private final List<Integer> loaded = new CopyOnWriteArrayList<>();
+    private final Function<Pageable, Page<MemberTeamDto>> loader = pageable -> {
+        loaded.add(pageable.getPageNumber());
+        return new PageImpl<>(List.of(), pageable, 100);
+    };
+
+    @AfterEach
+    public void after() {
+        prefetcher.destroy();
+    }
+
+    @Test
+    public void nextPageIsPrefetched() throws Exception {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+
+        prefetcher.page("v2", condition, PageRequest.of(0, 10), loader);
+        awaitPrefetched();
+        assertThat(loaded).containsExactly(0, 1);
+
+        final Page<MemberTeamDto> next = prefetcher.page("v2", condition, PageRequest.of(1, 10), loader);
+        awaitPrefetched();
+        assertThat(next.getNumber()).isEqualTo(1);
+        // 1 페이지는 미리 읽은 것을 쓰고 2 페이지만 새로 읽는다
+        assertThat(loaded).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    public void prefetchedPageIsNotUsedAfterWrite() throws Exception {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+
+        prefetcher.page("v2", condition, PageRequest.of(0, 10), loader);
+        awaitPrefetched();
+        dataVersion.markWritten();
+
+        prefetcher.page("v2", condition, PageRequest.of(1, 10), loader);
+        awaitPrefetched();
+        assertThat(loaded).containsExactly(0, 1, 1, 2);
+    }
+
+    @Test
+    public void shapeIsDisabledWhenPrefetchDoesNotPay() throws Exception {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+
+        // 다음 페이지를 한 번도 부르지 않는다
+        prefetcher.page("v2", condition, PageRequest.of(0, 10), loader);
+        awaitPrefetched();
+        prefetcher.page("v2", condition, PageRequest.of(5, 10), loader);
+        awaitPrefetched();
+
+        prefetcher.page("v2", condition, PageRequest.of(8, 10), loader);
+        awaitPrefetched();
+        assertThat(loaded).containsExactly(0, 1, 5, 6, 8);
+    }
+
+    @Test
+    public void requestWaitsForInFlightPrefetch() throws Exception {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Function<Pageable, Page<MemberTeamDto>> slowLoader = pageable -> {
+            if (pageable.getPageNumber() == 1) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return loader.apply(pageable);
+        };
+
+        prefetcher.page("v2", condition, PageRequest.of(0, 10), slowLoader);
+        // 1 페이지 미리 읽기가 끝나기 전에 요청, 미리 읽기를 기다렸다가 그 결과를 쓴다
+        final CompletableFuture<Page<MemberTeamDto>> next = CompletableFuture.supplyAsync(
+                () -> prefetcher.page("v2", condition, PageRequest.of(1, 10), slowLoader));
+        CompletableFuture.runAsync(release::countDown, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+
+        assertThat(next.get(5, TimeUnit.SECONDS).getNumber()).isEqualTo(1);
+        awaitPrefetched();
+        assertThat(loaded).containsExactly(0, 1, 2);
+    }
+
+    /**
+     * 캐시에 들어간 미리 읽기가 모두 끝날 때까지
+     */
+    private void awaitPrefetched() throws Exception {
+        prefetcher.inFlight().get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,149 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * id 범위 분할 스캔이 모든 row 를 정확히 한 번씩 읽는지, 파티션마다 연 EntityManager 를 닫는지
+ * 스캐너는 별도 커넥션으로 읽으므로 데이터를 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest
+public class MemberPartitionScannerTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final String prefix = "scan-" + UUID.randomUUID() + "-";
+
+    @AfterEach
+    public void after() {
+        tx().executeWithoutResult(status -> em.createQuery("delete from Member m where m.username like :prefix")
+                .setParameter("prefix", prefix + "%")
+                .executeUpdate());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1, 1000", "3, 7", "8, 1", "500, 4"})
+    public void scansEveryRowOnce(int partitions, int chunkSize) {
+        // 중간에 지운 id 로 구멍을 만든다
+        tx().executeWithoutResult(status -> {
+            final List<Member> members = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                final Member member = new Member(prefix + i, i);
+                em.persist(member);
+                members.add(member);
+            }
+            em.flush();
+            for (int i = 5; i < 40; i += 6) {
+                em.remove(members.get(i));
+            }
+        });
+
+        final CountingEntityManagerFactory counting = new CountingEntityManagerFactory(emf);
+        final MemberPartitionScanner scanner = new MemberPartitionScanner(counting.proxy, 2, chunkSize);
+        final Queue<Long> scanned = new ConcurrentLinkedQueue<>();
+
+        final long count = scanner.scan(partitions, row -> scanned.add(row.getMemberId()));
+
+        final List<Long> expected = memberRepository.findAll().stream().map(Member::getId).collect(Collectors.toList());
+        assertThat(count).isEqualTo(expected.size());
+        assertThat(scanned).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(counting.closed.get()).isEqualTo(counting.created.get()).isGreaterThan(1);
+    }
+
+    @Test
+    public void scannedRowsCarryTeam() {
+        final Queue<MemberTeamDto> scanned = new ConcurrentLinkedQueue<>();
+        tx().executeWithoutResult(status -> em.persist(new Member(prefix + "noTeam", 1)));
+
+        new MemberPartitionScanner(emf, 2, 10).scan(3, scanned::add);
+
+        assertThat(scanned).filteredOn(row -> (prefix + "noTeam").equals(row.getUsername()))
+                .singleElement()
+                .satisfies(row -> assertThat(row.getTeamId()).isNull());
+    }
+
+    @Test
+    public void splitCoversRangeWithPartialLastRange() {
+        assertThat(MemberPartitionScanner.split(1L, 10L, 3))
+                .containsExactly(new long[]{1, 4}, new long[]{5, 8}, new long[]{9, 10});
+        assertThat(MemberPartitionScanner.split(7L, 7L, 4)).containsExactly(new long[]{7, 7});
+        // 파티션이 id 수보다 많으면 폭 1
+        assertThat(MemberPartitionScanner.split(1L, 3L, 10))
+                .containsExactly(new long[]{1, 1}, new long[]{2, 2}, new long[]{3, 3});
+        assertThat(MemberPartitionScanner.split(1L, 10L, 0)).containsExactly(new long[]{1, 10});
+    }
+
+    @Test
+    public void splitEmptyTable() {
+        assertThat(MemberPartitionScanner.split(null, null, 4)).isEmpty();
+    }
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * createEntityManager / close 횟수를 센다.
+     */
+    static class CountingEntityManagerFactory {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+        final EntityManagerFactory proxy;
+
+        CountingEntityManagerFactory(EntityManagerFactory target) {
+            this.proxy = proxy(EntityManagerFactory.class, target, (name, result) -> {
+                if (name.equals("createEntityManager")) {
+                    created.incrementAndGet();
+                    return proxy(EntityManager.class, result, (emMethod, emResult) -> {
+                        if (emMethod.equals("close")) {
+                            closed.incrementAndGet();
+                        }
+                        return emResult;
+                    });
+                }
+                return result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Object target, java.util.function.BiFunction<String, Object, Object> after) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return after.apply(method.getName(), method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+    }
+}
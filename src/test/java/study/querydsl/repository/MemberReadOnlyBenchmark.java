@@ -0,0 +1,77 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 엔티티 조회 시 영속성 컨텍스트가 차지하는 메모리 비교: 일반 조회 vs read-only 조회
+ */
+@Tag("benchmark")
+@SpringBootTest
+@Transactional
+public class MemberReadOnlyBenchmark {
+
+    private static final int MEMBERS = 50_000;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        for (int i = 0; i < MEMBERS; i++) {
+            em.persist(new Member("member" + i, i % 100));
+            if (i % 1_000 == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void memoryPerEntity() {
+        final long managed = retainedBytes(() -> em.createQuery("select m from Member m", Member.class).getResultList());
+        final long readOnly = retainedBytes(() -> memberJpaRepository.findAll());
+
+        System.out.printf("managed   = %d bytes/entity%n", managed / MEMBERS);
+        System.out.printf("read-only = %d bytes/entity%n", readOnly / MEMBERS);
+
+        assertThat(readOnly).isLessThan(managed);
+    }
+
+    /**
+     * 조회 결과 + 영속성 컨텍스트가 붙잡고 있는 힙 크기
+     */
+    private long retainedBytes(Supplier<List<Member>> query) {
+        em.clear();
+        final long before = usedHeap();
+        final List<Member> members = query.get();
+        final long after = usedHeap();
+
+        assertThat(members).hasSize(MEMBERS);
+        em.clear();
+        return after - before;
+    }
+
+    private long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -7,14 +8,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberLookupResult;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -65,6 +70,97 @@ public class MemberRepositoryTest {
         assertThat(results).extracting("age").containsExactly(10, 20);
     }
 
+    @Test
+    public void searchIgnoreCaseTest() {
+        em.persist(new Member("Member1", 10));
+        em.persist(new Member("member2", 20));
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("MEMBER1");
+
+        assertThat(memberRepository.search(condition)).isEmpty();
+
+        condition.setIgnoreCase(true);
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("Member1");
+    }
+
+    @Test
+    public void searchTopKPerTeamTest() {
+        final Team teamA = new Team("teamA");
+        final Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamB));
+        em.persist(new Member("member6", 60));
+
+        final Sort oldest = Sort.by(Sort.Order.desc("age"));
+        final Map<Long, List<MemberTeamDto>> perTeam = memberRepository.searchTopKPerTeam(new MemberSearchCondition(), oldest, 2);
+
+        assertThat(perTeam.get(teamA.getId())).extracting("age").containsExactly(30, 20);
+        assertThat(perTeam.get(teamB.getId())).extracting("age").containsExactly(50, 40);
+        assertThat(perTeam.get(null)).extracting("age").containsExactly(60);
+
+        final List<MemberTeamDto> top = memberRepository.searchTopK(new MemberSearchCondition(), Sort.by("teamName", "age"), 3);
+        assertThat(top).extracting("age").containsExactly(60, 10, 20);
+    }
+
+    @Test
+    public void searchColumnsTest() {
+        final Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30));
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        final MemberTeamColumns columns = memberRepository.searchColumns(condition);
+
+        assertThat(columns.size()).isEqualTo(2);
+        final Map<String, Integer> rows = new HashMap<>();
+        for (int row = 0; row < columns.size(); row++) {
+            rows.put(columns.username(row), row);
+        }
+        final int member2 = rows.get("member2");
+        assertThat(columns.age(member2)).isEqualTo(20);
+        assertThat(columns.teamId(member2)).isEqualTo(teamA.getId());
+        assertThat(columns.teamName(member2)).isEqualTo("teamA");
+        final int member3 = rows.get("member3");
+        assertThat(columns.teamId(member3)).isNull();
+        assertThat(columns.teamName(member3)).isNull();
+    }
+
+    @Test
+    public void changeTeamTest() {
+        final Team teamA = new Team("teamA");
+        final Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        final Member member1 = new Member("member1", 10, teamA);
+        final Member member2 = new Member("member2", 20, teamA);
+        em.persist(member1);
+        em.persist(member2);
+        em.flush();
+        em.clear();
+
+        final Team loadedTeamB = em.find(Team.class, teamB.getId());
+        assertThat(loadedTeamB.getMembers()).isEmpty();
+        final Member loadedMember1 = em.find(Member.class, member1.getId());
+
+        final long moved = memberRepository.changeTeam(List.of(member1.getId(), member2.getId()), teamB.getId());
+
+        assertThat(moved).isEqualTo(2);
+        assertThat(loadedMember1.getTeam()).isSameAs(loadedTeamB);
+        assertThat(loadedTeamB.getMembers()).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        // 이전 팀은 프록시 그대로, members 를 로딩하지 않는다.
+        assertThat(Hibernate.isInitialized(em.getReference(Team.class, teamA.getId()))).isFalse();
+    }
+
     @Test
     public void searchPageSimpleTest() {
         final Team teamA = new Team("teamA");
@@ -112,6 +208,53 @@ public class MemberRepositoryTest {
         assertThat(results.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
     }
 
+    @Test
+    public void searchPageWindowCountTest() {
+        final Team teamA = new Team("teamA");
+        final Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+
+        final Page<MemberTeamDto> results = memberRepository.searchPageWindowCount(condition, PageRequest.of(1, 3));
+
+        assertThat(results.getTotalElements()).isEqualTo(4);
+        assertThat(results.getContent()).extracting("username").containsExactly("member4");
+
+        // 마지막 페이지 뒤 -> 카운트 쿼리로 전체 개수를 구한다.
+        final Page<MemberTeamDto> empty = memberRepository.searchPageWindowCount(condition, PageRequest.of(5, 3));
+        assertThat(empty.getContent()).isEmpty();
+        assertThat(empty.getTotalElements()).isEqualTo(4);
+    }
+
+    @Test
+    public void findAllByIdsTest() {
+        final Member member1 = new Member("member1", 10);
+        final Member member2 = new Member("member2", 20);
+        final Member member3 = new Member("member3", 30);
+        memberRepository.save(member1);
+        memberRepository.save(member2);
+        memberRepository.save(member3);
+
+        final MemberLookupResult<Long> result = memberRepository.findAllByIds(
+                List.of(member3.getId(), -1L, member1.getId()));
+
+        // 입력 순서대로, 없는 키는 missing 으로
+        assertThat(result.getFound()).containsExactly(member3, member1);
+        assertThat(result.getMissing()).containsExactly(-1L);
+
+        final MemberLookupResult<String> byUsername = memberRepository.findAllByUsernames(List.of("member2", "nobody"));
+        assertThat(byUsername.getFound()).containsExactly(member2);
+        assertThat(byUsername.getMissing()).containsExactly("nobody");
+    }
+
     @Test
     public void sortTestOrderSpecifier() {
         final Team teamA = new Team("teamA");
@@ -0,0 +1,112 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 데이터셋에서 JPA(MemberRepositoryImpl) vs querydsl-sql(MemberSqlRepository) 비교
+ */
+@Tag("benchmark")
+@SpringBootTest
+@Transactional
+public class MemberSqlRepositoryBenchmark {
+
+    private static final int MEMBERS = 10_000;
+    private static final int ITERATIONS = 200;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberSqlRepository memberSqlRepository;
+
+    @BeforeEach
+    public void before() {
+        final Team teamA = new Team("teamA");
+        final Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        for (int i = 0; i < MEMBERS; i++) {
+            em.persist(new Member("member" + i, i % 100, i % 2 == 0 ? teamA : teamB));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void search() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(10);
+        condition.setAgeLoe(20);
+
+        final List<MemberTeamDto> jpa = measure("jpa search", () -> memberRepository.search(condition));
+        final List<MemberTeamDto> sql = measure("sql search", () -> memberSqlRepository.search(condition));
+
+        assertThat(sql).containsExactlyInAnyOrderElementsOf(jpa);
+    }
+
+    @Test
+    public void searchPageComplex() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        final PageRequest pageable = PageRequest.of(3, 20);
+
+        final Page<MemberTeamDto> jpa = measure("jpa searchPageComplex", () -> memberRepository.searchPageComplex(condition, pageable));
+        final Page<MemberTeamDto> sql = measure("sql searchPageComplex", () -> memberSqlRepository.searchPageComplex(condition, pageable));
+
+        assertThat(sql.getTotalElements()).isEqualTo(jpa.getTotalElements());
+        assertThat(sql.getContent()).hasSameSizeAs(jpa.getContent());
+    }
+
+    /**
+     * 2번 왕복(데이터 + count) vs 1번 왕복(count(*) over())
+     */
+    @Test
+    public void searchPageWindowCount() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        final PageRequest pageable = PageRequest.of(10, 20);
+
+        final Page<MemberTeamDto> twoQueries = measure("sql searchPageSimple", () -> memberSqlRepository.searchPageSimple(condition, pageable));
+        final Page<MemberTeamDto> oneQuery = measure("sql searchPageWindowCount", () -> memberSqlRepository.searchPageWindowCount(condition, pageable));
+
+        assertThat(oneQuery.getTotalElements()).isEqualTo(twoQueries.getTotalElements());
+        assertThat(oneQuery.getContent()).hasSameSizeAs(twoQueries.getContent());
+    }
+
+    private <T> T measure(String name, Supplier<T> query) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+            em.clear();
+        }
+
+        T result = null;
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = query.get();
+            em.clear();
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-25s %.1f us/op%n", name, elapsed / 1_000.0 / ITERATIONS);
+        return result;
+    }
+}
@@ -0,0 +1,212 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * member_team 읽기 모델이 원본(member, team)과 맞는지 확인
+ * 벌크 update 는 커밋돼야 stale 로 표시되므로 트랜잭션을 직접 나누고 끝나면 지운다.
+ */
+@SpringBootTest(properties = {"member.read-model.enabled=true", "member.read-model.check-interval=1h"})
+public class MemberTeamReadModelTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberTeamReadModel readModel;
+    @Autowired
+    MemberTeamReadModelTracker tracker;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final String prefix = "read-model-" + UUID.randomUUID() + "-";
+    private final List<Long> teamIds = new ArrayList<>();
+
+    @AfterEach
+    public void after() {
+        tx().executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like :prefix")
+                    .setParameter("prefix", prefix + "%")
+                    .executeUpdate();
+            teamIds.forEach(id -> em.remove(em.find(Team.class, id)));
+        });
+        readModel.rebuildIfStale();
+    }
+
+    @Test
+    public void insert() {
+        final Long memberId = tx().execute(status -> {
+            final Team team = persistTeam("teamA");
+            final Member saved = new Member(prefix + "member1", 10, team);
+            em.persist(saved);
+            return saved.getId();
+        });
+
+        assertThat(readRow(memberId)).containsExactly(prefix + "member1", 10, prefix + "teamA");
+        assertThat(search()).extracting("username").containsExactly(prefix + "member1");
+    }
+
+    @Test
+    public void update() {
+        final Long memberId = persistMember(10);
+
+        tx().executeWithoutResult(status -> {
+            final Team teamB = persistTeam("teamB");
+            final Member found = em.find(Member.class, memberId);
+            found.setUsername(prefix + "renamed");
+            found.setAge(20);
+            found.changeTeam(teamB);
+        });
+
+        assertThat(readRow(memberId)).containsExactly(prefix + "renamed", 20, prefix + "teamB");
+        assertThat(tracker.isStale()).isFalse();
+    }
+
+    @Test
+    public void delete() {
+        final Long memberId = persistMember(10);
+
+        tx().executeWithoutResult(status -> em.remove(em.find(Member.class, memberId)));
+
+        assertThat(readRows(memberId)).isEmpty();
+        assertThat(search()).isEmpty();
+    }
+
+    @Test
+    public void teamRename() {
+        final Long memberId = persistMember(10);
+
+        tx().executeWithoutResult(status -> em.find(Team.class, teamIds.get(0)).setName(prefix + "teamC"));
+
+        assertThat(readRow(memberId)).containsExactly(prefix + "member1", 10, prefix + "teamC");
+        assertThat(tracker.isStale()).isFalse();
+    }
+
+    @Test
+    public void bulkUpdate() {
+        final Long memberId = persistMember(10);
+
+        tx().executeWithoutResult(status -> queryFactory.update(member)
+                .set(member.age, member.age.add(5))
+                .where(member.username.startsWith(prefix))
+                .execute());
+
+        // member_team 은 아직 10, 검색은 stale 인 동안 조인 쿼리로 원본을 읽는다
+        assertThat(tracker.isStale()).isTrue();
+        assertThat(readRow(memberId)).containsExactly(prefix + "member1", 10, prefix + "teamA");
+        assertThat(search()).extracting("age").containsExactly(15);
+
+        readModel.rebuildIfStale();
+
+        assertThat(tracker.isStale()).isFalse();
+        assertThat(readRow(memberId)).containsExactly(prefix + "member1", 15, prefix + "teamA");
+        assertThat(search()).extracting("age").containsExactly(15);
+    }
+
+    /**
+     * "where member_id=?" 하나짜리 벌크 update 도 엔티티 이벤트가 없으므로 stale
+     */
+    @Test
+    public void bulkUpdateByOneId() {
+        final Long memberId = persistMember(10);
+
+        tx().executeWithoutResult(status -> queryFactory.update(member)
+                .set(member.age, 30)
+                .where(member.id.eq(memberId))
+                .execute());
+
+        assertThat(tracker.isStale()).isTrue();
+        assertThat(search()).extracting("age").containsExactly(30);
+
+        readModel.rebuildIfStale();
+
+        assertThat(readRow(memberId)).containsExactly(prefix + "member1", 30, prefix + "teamA");
+    }
+
+    @Test
+    public void rolledBackBulkUpdateIsNotStale() {
+        persistMember(10);
+
+        tx().executeWithoutResult(status -> {
+            queryFactory.update(member)
+                    .set(member.age, member.age.add(5))
+                    .where(member.username.startsWith(prefix))
+                    .execute();
+            status.setRollbackOnly();
+        });
+
+        assertThat(tracker.isStale()).isFalse();
+    }
+
+    @Test
+    public void reassignmentRefreshIsNotStale() {
+        final Long memberId = persistMember(10);
+        final Long teamB = tx().execute(status -> persistTeam("teamB").getId());
+
+        memberRepository.changeTeam(List.of(memberId), teamB);
+
+        assertThat(tracker.isStale()).isFalse();
+        assertThat(readRow(memberId)).containsExactly(prefix + "member1", 10, prefix + "teamB");
+    }
+
+    private Long persistMember(int age) {
+        return tx().execute(status -> {
+            final Member saved = new Member(prefix + "member1", age, persistTeam("teamA"));
+            em.persist(saved);
+            return saved.getId();
+        });
+    }
+
+    private Team persistTeam(String name) {
+        final Team team = new Team(prefix + name);
+        em.persist(team);
+        em.flush();
+        teamIds.add(team.getId());
+        return team;
+    }
+
+    private List<MemberTeamDto> search() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(prefix + "member1");
+        return memberRepository.search(condition);
+    }
+
+    private Object[] readRow(Long memberId) {
+        final List<Object[]> rows = readRows(memberId);
+        assertThat(rows).hasSize(1);
+        final Object[] row = rows.get(0);
+        return new Object[]{row[0], ((Number) row[1]).intValue(), row[2]};
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> readRows(Long memberId) {
+        return tx().execute(status -> em.createNativeQuery("select username, age, team_name from member_team where member_id = ?")
+                .setParameter(1, memberId)
+                .getResultList());
+    }
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+}
@@ -0,0 +1,120 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChangeEvent;
+import study.querydsl.event.MemberChangeEventRingBuffer;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 팀 이동(벌크 update)이 커밋된 뒤 옮겨진 회원마다 변경 이벤트가 나가는지
+ * 이벤트는 커밋돼야 발행되므로 트랜잭션을 직접 나누고 끝나면 지운다.
+ */
+@SpringBootTest
+public class MemberTeamReassignmentTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberTeamReassignment reassignment;
+    @Autowired
+    MemberChangeEventRingBuffer ringBuffer;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final String prefix = "reassign-" + UUID.randomUUID() + "-";
+    private final List<Long> teamIds = new ArrayList<>();
+
+    @AfterEach
+    public void after() {
+        tx().executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like :prefix")
+                    .setParameter("prefix", prefix + "%")
+                    .executeUpdate();
+            teamIds.forEach(id -> em.remove(em.find(Team.class, id)));
+        });
+    }
+
+    @Test
+    public void singleMemberMovePublishesRowEvent() {
+        final Long teamA = persistTeam("teamA");
+        final Long teamB = persistTeam("teamB");
+        final Long memberId = persistMember(teamA);
+
+        final MemberChangeEventRingBuffer.Cursor cursor = ringBuffer.cursor();
+        assertThat(reassignment.changeTeam(memberId, teamB)).isEqualTo(1);
+
+        assertThat(drain(cursor)).extracting("type", "entityName", "id")
+                .contains(tuple(MemberChangeEvent.Type.UPDATE, "Member", memberId));
+    }
+
+    @Test
+    public void onlyMovedMembersArePublished() {
+        final Long teamA = persistTeam("teamA");
+        final Long memberId = persistMember(null);
+        final long missingId = -1L;
+
+        final MemberChangeEventRingBuffer.Cursor cursor = ringBuffer.cursor();
+        assertThat(reassignment.changeTeam(List.of(memberId, missingId), teamA)).isEqualTo(1);
+
+        final List<MemberChangeEvent> events = drain(cursor);
+        assertThat(events).extracting("id").contains(memberId).doesNotContain(missingId);
+    }
+
+    @Test
+    public void rolledBackMoveIsNotPublished() {
+        final Long teamA = persistTeam("teamA");
+        final Long memberId = persistMember(null);
+
+        final MemberChangeEventRingBuffer.Cursor cursor = ringBuffer.cursor();
+        tx().executeWithoutResult(status -> {
+            reassignment.changeTeam(memberId, teamA);
+            status.setRollbackOnly();
+        });
+
+        assertThat(drain(cursor)).extracting("id").doesNotContain(memberId);
+    }
+
+    private Long persistTeam(String name) {
+        final Long id = tx().execute(status -> {
+            final Team team = new Team(prefix + name);
+            em.persist(team);
+            return team.getId();
+        });
+        teamIds.add(id);
+        return id;
+    }
+
+    private Long persistMember(Long teamId) {
+        return tx().execute(status -> {
+            final Member saved = new Member(prefix + "member", 10, teamId != null ? em.find(Team.class, teamId) : null);
+            em.persist(saved);
+            return saved.getId();
+        });
+    }
+
+    private static List<MemberChangeEvent> drain(MemberChangeEventRingBuffer.Cursor cursor) {
+        final List<MemberChangeEvent> events = new ArrayList<>();
+        for (MemberChangeEvent event = cursor.poll(); event != null; event = cursor.poll()) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+}
@@ -0,0 +1,112 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 팀별 top-K 힙(MemberTopK) 경로가 row_number() 경로와 같은 row 를 고르는지
+ * 다른 테스트가 남긴 회원과 섞이지 않도록 나이 1000 이상만 조회한다.
+ */
+@SpringBootTest
+@Transactional
+public class MemberTopKTest {
+
+    private static final int MIN_AGE = 1000;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberSqlRepository sqlRepository;
+
+    private Team teamA;
+    private Team teamB;
+    private Team teamC;
+
+    @BeforeEach
+    public void before() {
+        teamA = new Team("topk-teamA");
+        teamB = new Team("topk-teamB");
+        teamC = new Team("topk-teamC");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+
+        // teamA 는 k 보다 많고 같은 나이가 있다, teamB 는 k 보다 적다, teamC 는 정확히 k, 팀 없는 회원도 k 보다 많다
+        persist("a1", 1010, teamA);
+        persist("a2", 1030, teamA);
+        persist("a3", 1020, teamA);
+        persist("a4", 1030, teamA);
+        persist("a5", 1005, teamA);
+        persist("b1", 1040, teamB);
+        persist("c1", 1001, teamC);
+        persist("c2", 1003, teamC);
+        persist("c3", 1002, teamC);
+        persist("n1", 1050, null);
+        persist("n2", 1060, null);
+        persist("n3", 1055, null);
+        persist("n4", 1070, null);
+        persist("a0", 999, teamA);
+        em.flush();
+    }
+
+    @Test
+    public void heapMatchesWindowFunction() {
+        for (Sort sort : List.of(
+                Sort.by(Sort.Order.desc("age")),
+                Sort.by(Sort.Order.asc("age")),
+                Sort.by("username"),
+                Sort.by(Sort.Order.desc("teamName"), Sort.Order.asc("age")))) {
+            for (int k : new int[]{1, 3, 10}) {
+                assertThat(ids(search(sort, k, false))).as("%s k=%d", sort, k)
+                        .isEqualTo(ids(search(sort, k, true)));
+            }
+        }
+    }
+
+    @Test
+    public void heapKeepsTopKPerTeam() {
+        final Map<Long, List<MemberTeamDto>> perTeam = search(Sort.by(Sort.Order.desc("age")), 3, false);
+
+        // 같은 나이는 member_id 순, 나이 999 인 a0 은 조건에서 빠진다
+        assertThat(perTeam.get(teamA.getId())).extracting("username").containsExactly("a2", "a4", "a3");
+        assertThat(perTeam.get(teamB.getId())).extracting("username").containsExactly("b1");
+        assertThat(perTeam.get(teamC.getId())).extracting("username").containsExactly("c2", "c3", "c1");
+        assertThat(perTeam.get(null)).extracting("username").containsExactly("n4", "n2", "n3");
+        assertThat(perTeam.get(null)).extracting("teamName").containsOnlyNulls();
+    }
+
+    private Map<Long, List<MemberTeamDto>> search(Sort sort, int k, boolean windowFunction) {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(MIN_AGE);
+        return sqlRepository.searchTopKPerTeam(condition, sort, k, windowFunction);
+    }
+
+    /**
+     * 그룹 순서는 두 방식이 다르므로 팀별 id 목록만 비교
+     */
+    private static Map<Long, List<Long>> ids(Map<Long, List<MemberTeamDto>> perTeam) {
+        final Map<Long, List<Long>> ids = new LinkedHashMap<>();
+        perTeam.forEach((teamId, rows) -> ids.put(teamId, rows.stream().map(MemberTeamDto::getMemberId).collect(Collectors.toList())));
+        return ids;
+    }
+
+    private void persist(String username, int age, Team team) {
+        em.persist(new Member(username, age, team));
+    }
+}
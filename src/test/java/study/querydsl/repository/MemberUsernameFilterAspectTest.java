@@ -0,0 +1,153 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.monitor.StatementCounter;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * findByUsername 앞의 Bloom filter 확인 (트랜잭션 밖에서 호출해야 영속성 컨텍스트가 비어 있다)
+ */
+@SpringBootTest
+public class MemberUsernameFilterAspectTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    MemberUsernameFilter usernameFilter;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final String username = "unknown-" + UUID.randomUUID();
+
+    @AfterEach
+    public void after() {
+        usernameFilter.rebuild();
+    }
+
+    @Test
+    public void negativeSkipsDatabase() {
+        assertThat(usernameFilter.mightContain(username)).isFalse();
+
+        final int before = StatementCounter.current();
+        assertThat(memberRepository.findByUsername(username)).isEmpty();
+        assertThat(memberJpaRepository.findByUsername(username)).isEmpty();
+        assertThat(StatementCounter.current()).isEqualTo(before);
+    }
+
+    @Test
+    public void staleFilterAnswersMaybe() {
+        usernameFilter.inspect("update member set username=? where age>?");
+        assertThat(usernameFilter.isStale()).isTrue();
+        assertThat(usernameFilter.mightContain(username)).isTrue();
+
+        final int before = StatementCounter.current();
+        assertThat(memberRepository.findByUsername(username)).isEmpty();
+        assertThat(StatementCounter.current()).isGreaterThan(before);
+
+        usernameFilter.rebuild();
+        assertThat(usernameFilter.isStale()).isFalse();
+    }
+
+    @Test
+    public void managedPersistenceContextBypassesFilter() {
+        final TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            // flush 전이라 필터는 아직 모르는 이름, 조회의 auto flush 로 보여야 한다
+            em.persist(new Member(username, 10));
+            final List<Member> found = memberRepository.findByUsername(username);
+
+            assertThat(found).extracting("username").containsExactly(username);
+            status.setRollbackOnly();
+        });
+    }
+
+    @Test
+    public void entityUpdateIsNotStale() {
+        final Long id = persist(username);
+        try {
+            final String renamed = username + "-renamed";
+            tx().executeWithoutResult(status -> em.find(Member.class, id).setUsername(renamed));
+
+            assertThat(usernameFilter.isStale()).isFalse();
+            assertThat(usernameFilter.mightContain(renamed)).isTrue();
+            assertThat(memberRepository.findByUsername(renamed)).extracting("id").containsExactly(id);
+        } finally {
+            remove(id);
+        }
+    }
+
+    /**
+     * update(member).where(member.id.eq(id)) 는 엔티티 flush 와 같은 "where member_id=?" 모양이지만 엔티티 이벤트가 없다.
+     */
+    @Test
+    public void singleRowBulkRenameIsNotFalseNegative() {
+        final Long id = persist(username);
+        try {
+            final String renamed = username + "-bulk";
+            tx().executeWithoutResult(status -> queryFactory.update(member)
+                    .set(member.username, renamed)
+                    .set(member.usernameLower, Member.normalizeUsername(renamed))
+                    .where(member.id.eq(id))
+                    .execute());
+
+            assertThat(usernameFilter.isStale()).isTrue();
+            assertThat(memberRepository.findByUsername(renamed)).extracting("id").containsExactly(id);
+            assertThat(memberJpaRepository.findByUsername(renamed)).extracting("id").containsExactly(id);
+
+            usernameFilter.rebuild();
+            assertThat(usernameFilter.mightContain(renamed)).isTrue();
+        } finally {
+            remove(id);
+        }
+    }
+
+    @Test
+    public void rolledBackBulkRenameSettles() {
+        tx().executeWithoutResult(status -> {
+            queryFactory.update(member)
+                    .set(member.username, username)
+                    .where(member.id.eq(-1L))
+                    .execute();
+            assertThat(usernameFilter.isStale()).isTrue();
+            status.setRollbackOnly();
+        });
+        usernameFilter.rebuild();
+
+        assertThat(usernameFilter.isStale()).isFalse();
+    }
+
+    private Long persist(String name) {
+        return tx().execute(status -> {
+            final Member saved = new Member(name, 10);
+            em.persist(saved);
+            return saved.getId();
+        });
+    }
+
+    private void remove(Long id) {
+        tx().executeWithoutResult(status -> em.remove(em.find(Member.class, id)));
+    }
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+}
@@ -0,0 +1,126 @@
+package study.querydsl.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * member.sharding.enabled 일 때 JPA 쓰기가 샤드에 반영되고 MemberRepository 검색이 샤드로 가는지
+ */
+@SpringBootTest(properties = {
+        "member.sharding.enabled=true",
+        "member.sharding.urls=jdbc:h2:mem:it-shard0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:it-shard1;DB_CLOSE_DELAY=-1"})
+public class MemberShardingIntegrationTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    ShardedMemberRepository shardedMemberRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final String teamName = "team-" + UUID.randomUUID();
+    private Long teamId;
+    private Long otherTeamId;
+
+    @AfterEach
+    public void after() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (Long id : new Long[]{teamId, otherTeamId}) {
+                if (id != null) {
+                    em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", id).executeUpdate();
+                    em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", id).executeUpdate();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void committedWritesAreSearchedOnShards() {
+        final TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        teamId = tx.execute(status -> {
+            final Team team = new Team(teamName);
+            em.persist(team);
+            for (int i = 1; i <= 5; i++) {
+                em.persist(new Member(teamName + "-member" + i, i * 10, team));
+            }
+            return team.getId();
+        });
+
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        assertThat(memberRepository.search(condition)).hasSize(5);
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(1, 2, Sort.by("age"))).getContent())
+                .extracting("age").containsExactly(30, 40);
+
+        // 커밋되지 않은 쓰기는 샤드에 가지 않는다
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member(teamName + "-rollback", 99, em.find(Team.class, teamId)));
+            status.setRollbackOnly();
+        });
+        assertThat(shardedMemberRepository.search(condition)).hasSize(5);
+
+        tx.executeWithoutResult(status -> em.createQuery("select m from Member m where m.team.id = :teamId", Member.class)
+                .setParameter("teamId", teamId)
+                .getResultList()
+                .forEach(member -> member.setAge(member.getAge() + 1)));
+        assertThat(memberRepository.searchPageSimple(condition, PageRequest.of(0, 10, Sort.by("age"))).getContent())
+                .extracting("age").containsExactly(11, 21, 31, 41, 51);
+    }
+
+    /**
+     * 팀 이동은 벌크 update 라 엔티티 이벤트가 없다, 커밋 후에 샤드 row 가 새 팀의 샤드로 옮겨져야 한다.
+     */
+    @Test
+    public void bulkReassignmentMovesShardRows() {
+        final TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        final List<Long> memberIds = new ArrayList<>();
+        teamId = tx.execute(status -> {
+            final Team team = new Team(teamName);
+            em.persist(team);
+            for (int i = 1; i <= 3; i++) {
+                final Member member = new Member(teamName + "-member" + i, i * 10, team);
+                em.persist(member);
+                memberIds.add(member.getId());
+            }
+            return team.getId();
+        });
+        otherTeamId = tx.execute(status -> {
+            final Team team = new Team(teamName + "-other");
+            em.persist(team);
+            return team.getId();
+        });
+
+        assertThat(memberRepository.changeTeam(memberIds, otherTeamId)).isEqualTo(3);
+        assertThat(memberRepository.changeTeam(memberIds.get(0), teamId)).isEqualTo(1);
+
+        final MemberSearchCondition moved = new MemberSearchCondition();
+        moved.setTeamName(teamName + "-other");
+        assertThat(shardedMemberRepository.search(moved)).extracting("username")
+                .containsExactlyInAnyOrder(teamName + "-member2", teamName + "-member3");
+        final MemberSearchCondition stayed = new MemberSearchCondition();
+        stayed.setTeamName(teamName);
+        assertThat(shardedMemberRepository.search(stayed)).extracting("username").containsExactly(teamName + "-member1");
+        // 샤드마다 한 번씩만 있어야 한다
+        final MemberSearchCondition all = new MemberSearchCondition();
+        assertThat(shardedMemberRepository.search(all)).extracting("memberId").filteredOn(memberIds::contains).hasSize(3);
+    }
+}
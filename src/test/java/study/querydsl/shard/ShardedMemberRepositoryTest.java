@@ -0,0 +1,160 @@
+package study.querydsl.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 인메모리 H2 3개로 샤딩 검색 확인 (H2 서버 없이 실행된다)
+ */
+public class ShardedMemberRepositoryTest {
+
+    ShardedMemberRepository repository;
+    List<ClosingDataSource> shards;
+
+    @BeforeEach
+    public void before() {
+        final String prefix = UUID.randomUUID().toString();
+        shards = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            shards.add(new ClosingDataSource("jdbc:h2:mem:" + prefix + "-shard" + i + ";DB_CLOSE_DELAY=-1"));
+        }
+
+        repository = new ShardedMemberRepository(new ArrayList<>(shards));
+        repository.createSchema();
+
+        // 팀 4개, 회원 40명
+        for (long teamId = 1; teamId <= 4; teamId++) {
+            repository.saveTeam(teamId, "team" + teamId);
+        }
+        for (long memberId = 1; memberId <= 40; memberId++) {
+            repository.saveMember(100 + memberId, "member" + memberId, (int) memberId, memberId % 4 + 1);
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        repository.close();
+    }
+
+    @Test
+    public void upsertMovesMemberBetweenShards() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+
+        repository.upsertTeam(1L, "renamed");
+        for (long teamId = 1; teamId <= 4; teamId++) {
+            repository.upsertMember(101, "member1", 1, teamId);
+            assertThat(repository.search(condition)).extracting("teamId").containsExactly(teamId);
+        }
+        assertThat(repository.searchPageSimple(new MemberSearchCondition(), PageRequest.of(0, 10)).getTotalElements()).isEqualTo(40);
+
+        repository.upsertMember(101, "member1", 1, 1L);
+        assertThat(repository.search(condition)).extracting("teamName").containsExactly("renamed");
+
+        repository.deleteMember(101);
+        assertThat(repository.search(condition)).isEmpty();
+    }
+
+    @Test
+    public void closeClosesShardDataSources() {
+        repository.close();
+
+        assertThat(shards).allMatch(shard -> shard.closed);
+    }
+
+    @Test
+    public void search() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("team2");
+        condition.setAgeLoe(20);
+
+        final List<MemberTeamDto> results = repository.search(condition);
+
+        assertThat(results).extracting("age").containsExactly(1, 5, 9, 13, 17);
+        assertThat(results).extracting("teamName").containsOnly("team2");
+    }
+
+    @Test
+    public void searchPageAcrossShards() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        final PageRequest pageable = PageRequest.of(2, 7, Sort.by(Sort.Direction.DESC, "age"));
+
+        final Page<MemberTeamDto> page = repository.searchPageSimple(condition, pageable);
+
+        assertThat(page.getTotalElements()).isEqualTo(40);
+        assertThat(page.getContent()).extracting("age").containsExactly(26, 25, 24, 23, 22, 21, 20);
+    }
+
+    @Test
+    public void searchPageComplexLastPage() {
+        final MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(31);
+        final PageRequest pageable = PageRequest.of(1, 6, Sort.by("teamName", "age"));
+
+        final Page<MemberTeamDto> page = repository.searchPageComplex(condition, pageable);
+
+        assertThat(page.getTotalElements()).isEqualTo(10);
+        assertThat(page.getContent()).extracting("age").containsExactly(38, 31, 35, 39);
+    }
+
+    @Test
+    public void rebuildCopiesSourceIntoShards() throws SQLException {
+        final DriverManagerDataSource source = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + "-source;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table team (team_id bigint primary key, name varchar(255))");
+            statement.execute("create table member (member_id bigint primary key, age integer not null, username varchar(255), team_id bigint)");
+            statement.execute("insert into team values (1, 'source1'), (2, 'source2')");
+            statement.execute("insert into member select x, x, 'source-member' || x, case when x % 3 = 0 then null else x % 2 + 1 end"
+                    + " from system_range(1, 2500)");
+        }
+
+        repository.rebuild(source);
+
+        assertThat(repository.isSeeded()).isTrue();
+        assertThat(repository.searchPageSimple(new MemberSearchCondition(), PageRequest.of(0, 1)).getTotalElements()).isEqualTo(2500);
+        final MemberSearchCondition team1 = new MemberSearchCondition();
+        team1.setTeamName("source1");
+        assertThat(repository.search(team1)).hasSize(834).extracting("teamId").containsOnly(1L);
+        final MemberSearchCondition member = new MemberSearchCondition();
+        member.setUsername("SOURCE-MEMBER3");
+        member.setIgnoreCase(true);
+        assertThat(repository.search(member)).extracting("memberId", "teamId").containsExactly(tuple(3L, null));
+        // 기존 샤드 데이터(team1~4, member1~40)는 지워진다
+        final MemberSearchCondition old = new MemberSearchCondition();
+        old.setTeamName("team1");
+        assertThat(repository.search(old)).isEmpty();
+    }
+
+    static class ClosingDataSource extends DriverManagerDataSource implements AutoCloseable {
+
+        boolean closed;
+
+        ClosingDataSource(String url) {
+            super(url, "sa", "");
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}